@@ -0,0 +1,122 @@
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client de charge pour le product-service (Java 21, aucune dépendance)
+ *
+ * N clients simultanés bouclent sur la même URL pendant une durée fixe, puis on affiche
+ * le débit, les latences (p50, p99, max) et le nombre d'erreurs. Le token JWT est signé
+ * avec le même secret que le service (jwt.secret), comme le ferait le user-service.
+ *
+ * Usage : java LoadTest.java <url> <clients> <durée en s> [warmup en s]
+ *   ex : java LoadTest.java "http://localhost:8081/api/products/?size=20" 400 30 10
+ */
+public class LoadTest {
+
+    private static final String SECRET = System.getProperty("jwt.secret", "mySecretKey123456789012345678901234567890");
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage : java LoadTest.java <url> <clients> <durée en s> [warmup en s]");
+            System.exit(1);
+        }
+        URI uri = URI.create(args[0]);
+        int clients = Integer.parseInt(args[1]);
+        Duration duration = Duration.ofSeconds(Long.parseLong(args[2]));
+        Duration warmup = Duration.ofSeconds(args.length > 3 ? Long.parseLong(args[3]) : 5);
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Authorization", "Bearer " + token())
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+
+        run(client, request, clients, warmup, false);
+        Result result = run(client, request, clients, duration, true);
+
+        long[] latencies = result.latencies();
+        System.out.printf("clients=%d duree=%ds requetes=%d erreurs=%d debit=%.0f req/s p50=%.1f ms p99=%.1f ms max=%.1f ms%n",
+                clients, duration.toSeconds(), latencies.length, result.errors(),
+                latencies.length / (double) duration.toSeconds(),
+                percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(latencies, 1.0));
+    }
+
+    private record Result(long[] latencies, long errors) {
+    }
+
+    /**
+     * Chaque client est un thread virtuel : c'est le service qu'on mesure, pas le client
+     */
+    private static Result run(HttpClient client, HttpRequest request, int clients, Duration duration, boolean record)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<List<Long>> perClient = new ArrayList<>();
+        AtomicLong errors = new AtomicLong();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                List<Long> latencies = new ArrayList<>();
+                perClient.add(latencies);
+                executor.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                            if (response.statusCode() != 200) {
+                                errors.incrementAndGet();
+                                continue;
+                            }
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                        if (record) {
+                            latencies.add(System.nanoTime() - start);
+                        }
+                    }
+                });
+            }
+        }
+
+        long[] all = perClient.stream().flatMap(List::stream).mapToLong(Long::longValue).sorted().toArray();
+        return new Result(all, errors.get());
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    /**
+     * JWT HS256 avec un sub et un rôle, sans expiration
+     */
+    private static String token() throws Exception {
+        Base64.Encoder base64 = Base64.getUrlEncoder().withoutPadding();
+        String header = base64.encodeToString("{\"alg\":\"HS256\"}".getBytes(StandardCharsets.UTF_8));
+        String payload = base64.encodeToString("{\"sub\":\"loadtest\",\"userId\":\"loadtest\",\"role\":\"USER\"}"
+                .getBytes(StandardCharsets.UTF_8));
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        String signature = base64.encodeToString(mac.doFinal((header + "." + payload).getBytes(StandardCharsets.UTF_8)));
+        return header + "." + payload + "." + signature;
+    }
+}
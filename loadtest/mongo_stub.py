@@ -0,0 +1,267 @@
+#!/usr/bin/env python3
+"""
+Faux MongoDB pour les tests de charge, quand on n'a pas de vrai Mongo sous la main
+
+Parle juste assez le protocole (OP_QUERY pour le handshake, OP_MSG ensuite) pour que le
+product-service démarre et serve ses lectures : hello, count/aggregate, find sur _id, et
+des écritures acquittées sans rien faire. Chaque requête de données attend --delay-ms
+avant de répondre, pour simuler une base qui met un peu de temps à répondre (I/O bloquante
+côté service, c'est ce qu'on veut mesurer avec les threads virtuels).
+
+Usage : python3 mongo_stub.py --port 27018 --products 5000 --delay-ms 20
+"""
+import argparse
+import os
+import socketserver
+import struct
+import threading
+import time
+from datetime import datetime, timezone
+
+OP_REPLY = 1
+OP_QUERY = 2004
+OP_MSG = 2013
+
+
+class ObjectId(bytes):
+    pass
+
+
+class Int64(int):
+    pass
+
+
+# --- BSON minimal (types utilisés par le driver et par les produits) ---
+
+def _cstring(data, pos):
+    end = data.index(b"\x00", pos)
+    return data[pos:end].decode(), end + 1
+
+
+def decode(data, pos=0):
+    size = struct.unpack_from("<i", data, pos)[0]
+    end = pos + size - 1
+    pos += 4
+    doc = {}
+    while pos < end:
+        kind = data[pos]
+        name, pos = _cstring(data, pos + 1)
+        if kind == 0x01:
+            doc[name] = struct.unpack_from("<d", data, pos)[0]
+            pos += 8
+        elif kind == 0x02:
+            length = struct.unpack_from("<i", data, pos)[0]
+            doc[name] = data[pos + 4:pos + 3 + length].decode()
+            pos += 4 + length
+        elif kind in (0x03, 0x04):
+            length = struct.unpack_from("<i", data, pos)[0]
+            value = decode(data, pos)
+            doc[name] = list(value.values()) if kind == 0x04 else value
+            pos += length
+        elif kind == 0x05:
+            length = struct.unpack_from("<i", data, pos)[0]
+            doc[name] = data[pos + 5:pos + 5 + length]
+            pos += 5 + length
+        elif kind == 0x07:
+            doc[name] = ObjectId(data[pos:pos + 12])
+            pos += 12
+        elif kind == 0x08:
+            doc[name] = data[pos] == 1
+            pos += 1
+        elif kind == 0x09:
+            doc[name] = datetime.fromtimestamp(struct.unpack_from("<q", data, pos)[0] / 1000, timezone.utc)
+            pos += 8
+        elif kind == 0x0A:
+            doc[name] = None
+        elif kind == 0x10:
+            doc[name] = struct.unpack_from("<i", data, pos)[0]
+            pos += 4
+        elif kind in (0x11, 0x12):
+            doc[name] = struct.unpack_from("<q", data, pos)[0]
+            pos += 8
+        elif kind == 0x13:
+            doc[name] = data[pos:pos + 16]
+            pos += 16
+        else:
+            raise ValueError("type BSON non géré: %#x" % kind)
+    return doc
+
+
+def encode(doc):
+    body = b"".join(_element(name, value) for name, value in doc.items())
+    return struct.pack("<i", len(body) + 5) + body + b"\x00"
+
+
+def _element(name, value):
+    key = name.encode() + b"\x00"
+    if isinstance(value, ObjectId):
+        return b"\x07" + key + bytes(value)
+    if isinstance(value, bool):
+        return b"\x08" + key + (b"\x01" if value else b"\x00")
+    if isinstance(value, Int64):
+        return b"\x12" + key + struct.pack("<q", value)
+    if isinstance(value, int):
+        if -2 ** 31 <= value < 2 ** 31:
+            return b"\x10" + key + struct.pack("<i", value)
+        return b"\x12" + key + struct.pack("<q", value)
+    if isinstance(value, float):
+        return b"\x01" + key + struct.pack("<d", value)
+    if isinstance(value, str):
+        raw = value.encode()
+        return b"\x02" + key + struct.pack("<i", len(raw) + 1) + raw + b"\x00"
+    if isinstance(value, dict):
+        return b"\x03" + key + encode(value)
+    if isinstance(value, list):
+        return b"\x04" + key + encode({str(i): item for i, item in enumerate(value)})
+    if isinstance(value, datetime):
+        return b"\x09" + key + struct.pack("<q", int(value.timestamp() * 1000))
+    if value is None:
+        return b"\x0A" + key
+    raise ValueError("type non encodable: %r" % type(value))
+
+
+# --- Catalogue en mémoire ---
+
+CATEGORIES = ["Électronique", "Maison", "Sport", "Livres", "Jardin", "Mode"]
+
+
+def make_products(count):
+    products = []
+    for i in range(count):
+        products.append({
+            "_id": ObjectId(struct.pack(">IQ", 0x65000000, i)),
+            "name": "Produit %d" % i,
+            "description": "Description du produit de test %d" % i,
+            "price": "%d.%02d" % (1 + i % 500, i % 100),
+            "stock": i % 50,
+            "category": CATEGORIES[i % len(CATEGORIES)],
+            "version": 1,
+            "_class": "com.microcommerce.productservice.entity.Product",
+        })
+    return products
+
+
+def matches_id(product, condition):
+    if condition is None:
+        return True
+    if isinstance(condition, dict):
+        if "$gt" in condition:
+            return bytes(product["_id"]) > bytes(condition["$gt"])
+        if "$in" in condition:
+            return any(bytes(product["_id"]) == bytes(item) for item in condition["$in"])
+        return True
+    return bytes(product["_id"]) == bytes(condition)
+
+
+class Handler(socketserver.BaseRequestHandler):
+
+    def handle(self):
+        while True:
+            header = self._read(16)
+            if header is None:
+                return
+            length, request_id, _, opcode = struct.unpack("<iiii", header)
+            payload = self._read(length - 16)
+            if payload is None:
+                return
+            if opcode == OP_QUERY:
+                # Handshake initial : flags, nom de collection, skip, nreturn puis la commande
+                _, pos = _cstring(payload, 4)
+                command = decode(payload, pos + 8)
+                reply = encode(self.server.run(command))
+                body = struct.pack("<iqii", 0, 0, 0, 1) + reply
+                self.request.sendall(struct.pack("<iiii", 16 + len(body), 0, request_id, OP_REPLY) + body)
+            elif opcode == OP_MSG:
+                command = self._read_msg(payload)
+                body = struct.pack("<I", 0) + b"\x00" + encode(self.server.run(command))
+                self.request.sendall(struct.pack("<iiii", 16 + len(body), 0, request_id, OP_MSG) + body)
+            else:
+                return
+
+    def _read_msg(self, payload):
+        pos = 4
+        command = {}
+        while pos < len(payload):
+            kind = payload[pos]
+            pos += 1
+            if kind == 0:
+                size = struct.unpack_from("<i", payload, pos)[0]
+                command.update(decode(payload, pos))
+                pos += size
+            else:
+                # Section de documents (insert, update...) : on n'en a pas besoin
+                size = struct.unpack_from("<i", payload, pos)[0]
+                pos += size
+        return command
+
+    def _read(self, size):
+        chunks = b""
+        while len(chunks) < size:
+            chunk = self.request.recv(size - len(chunks))
+            if not chunk:
+                return None
+            chunks += chunk
+        return chunks
+
+
+class MongoStub(socketserver.ThreadingTCPServer):
+    daemon_threads = True
+    allow_reuse_address = True
+
+    def __init__(self, address, products, delay_ms):
+        super().__init__(address, Handler)
+        self.products = products
+        self.delay = delay_ms / 1000.0
+        self.connections = 0
+        self.lock = threading.Lock()
+
+    def run(self, command):
+        name = next(iter(command)).lower()
+        if name in ("hello", "ismaster"):
+            with self.lock:
+                self.connections += 1
+                connection_id = self.connections
+            return {"ismaster": True, "helloOk": True, "maxBsonObjectSize": 16777216,
+                    "maxMessageSizeBytes": 48000000, "maxWriteBatchSize": 100000,
+                    "localTime": datetime.now(timezone.utc), "logicalSessionTimeoutMinutes": 30,
+                    "connectionId": connection_id, "minWireVersion": 0, "maxWireVersion": 17,
+                    "readOnly": False, "ok": 1.0}
+        if name in ("ping", "buildinfo", "endsessions", "createindexes", "killcursors", "getlasterror"):
+            return {"ok": 1.0}
+
+        time.sleep(self.delay)
+        namespace = "%s.%s" % (command.get("$db", "productdb"), command[next(iter(command))])
+        if name == "count":
+            return {"n": len(self.products), "ok": 1.0}
+        if name == "aggregate":
+            return {"cursor": {"firstBatch": [{"_id": 1, "n": len(self.products)}], "id": Int64(0), "ns": namespace},
+                    "ok": 1.0}
+        if name == "find":
+            if command["find"] != "products":
+                return {"cursor": {"firstBatch": [], "id": Int64(0), "ns": namespace}, "ok": 1.0}
+            condition = (command.get("filter") or {}).get("_id")
+            found = [product for product in self.products if matches_id(product, condition)]
+            limit = abs(command.get("limit", 0) or 0)
+            if limit:
+                found = found[:limit]
+            return {"cursor": {"firstBatch": found, "id": Int64(0), "ns": namespace}, "ok": 1.0}
+        if name in ("insert", "update", "delete", "findandmodify"):
+            return {"n": 0, "nModified": 0, "value": None, "ok": 1.0}
+        return {"ok": 1.0}
+
+
+def main():
+    parser = argparse.ArgumentParser(description="Faux MongoDB pour les tests de charge")
+    parser.add_argument("--port", type=int, default=27018)
+    parser.add_argument("--products", type=int, default=5000)
+    parser.add_argument("--delay-ms", type=float, default=20.0)
+    args = parser.parse_args()
+
+    server = MongoStub(("127.0.0.1", args.port), make_products(args.products), args.delay_ms)
+    print("Faux Mongo sur le port %d (%d produits, %.0f ms par requête, pid %d)"
+          % (args.port, args.products, args.delay_ms, os.getpid()), flush=True)
+    server.serve_forever()
+
+
+if __name__ == "__main__":
+    main()
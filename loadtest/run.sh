@@ -0,0 +1,66 @@
+#!/usr/bin/env bash
+# Test de charge : threads plateforme vs threads virtuels (VIRTUAL_THREADS)
+#
+# Lance le service deux fois (VIRTUAL_THREADS=false puis true) et envoie la même charge
+# sur une page du catalogue, qui fait une requête MongoDB à chaque appel (pas de cache).
+# Besoin de Java 21 et du jar (mvn package -DskipTests).
+#
+# Par défaut on démarre le faux Mongo (mongo_stub.py) avec une latence fixe par requête,
+# pour que le résultat ne dépende que de la gestion des threads. Avec MONGO_URI=... on
+# tape sur un vrai MongoDB à la place.
+#
+# Variables : CLIENTS (400), DURATION (30 s), WARMUP (10 s), MONGO_DELAY_MS (20),
+#             MONGO_POOL (500, connexions max du driver), MONGO_URI, PORT (8081)
+set -euo pipefail
+
+cd "$(dirname "$0")"
+CLIENTS=${CLIENTS:-400}
+DURATION=${DURATION:-30}
+WARMUP=${WARMUP:-10}
+MONGO_DELAY_MS=${MONGO_DELAY_MS:-20}
+MONGO_POOL=${MONGO_POOL:-500}
+PORT=${PORT:-8081}
+JAR=$(ls ../target/product-service-*.jar | grep -v original | head -n 1)
+
+STUB_PID=""
+APP_PID=""
+cleanup() {
+    [ -n "$APP_PID" ] && kill "$APP_PID" 2>/dev/null || true
+    [ -n "$STUB_PID" ] && kill "$STUB_PID" 2>/dev/null || true
+}
+trap cleanup EXIT
+
+if [ -z "${MONGO_URI:-}" ]; then
+    python3 mongo_stub.py --port 27018 --delay-ms "$MONGO_DELAY_MS" > mongo-stub.log 2>&1 &
+    STUB_PID=$!
+    MONGO_URI="mongodb://localhost:27018/productdb"
+    sleep 1
+fi
+
+for virtual in false true; do
+    VIRTUAL_THREADS=$virtual java -jar "$JAR" \
+        --server.port="$PORT" \
+        --spring.data.mongodb.uri="$MONGO_URI?maxPoolSize=$MONGO_POOL" \
+        --logging.level.com.microcommerce.productservice=WARN \
+        --logging.level.org.springframework.web=WARN \
+        > "app-virtual-$virtual.log" 2>&1 &
+    APP_PID=$!
+
+    # Health est derrière le JWT : on attend juste que Tomcat réponde
+    until curl -s -o /dev/null "http://localhost:$PORT/api/products/health"; do
+        sleep 1
+    done
+
+    echo -n "VIRTUAL_THREADS=$virtual : "
+    java LoadTest.java "http://localhost:$PORT/api/products/?size=20" "$CLIENTS" "$DURATION" "$WARMUP"
+
+    # Sans broker RabbitMQ l'arrêt des listeners peut traîner : on n'attend pas plus d'une minute
+    kill "$APP_PID"
+    for _ in $(seq 1 60); do
+        kill -0 "$APP_PID" 2>/dev/null || break
+        sleep 1
+    done
+    kill -9 "$APP_PID" 2>/dev/null || true
+    wait "$APP_PID" 2>/dev/null || true
+    APP_PID=""
+done
@@ -2,6 +2,7 @@ package com.microcommerce.productservice;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -10,6 +11,7 @@ import org.slf4j.LoggerFactory;
  * Rien de compliqué, juste le point d'entrée de notre microservice
  */
 @SpringBootApplication
+@EnableScheduling
 public class ProductServiceApplication {
     
     private static final Logger logger = LoggerFactory.getLogger(ProductServiceApplication.class);
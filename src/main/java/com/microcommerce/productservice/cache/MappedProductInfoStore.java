@@ -0,0 +1,580 @@
+package com.microcommerce.productservice.cache;
+
+import com.microcommerce.productservice.dto.ProductInfoDto;
+import com.microcommerce.productservice.entity.Product;
+import com.microcommerce.productservice.repository.ProductRepository;
+import com.microcommerce.productservice.service.ProductChangeListener;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.math.BigDecimal;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Store hors tas (fichier mappé en mémoire) des infos produit servies par /internal/{id}
+ * (product.internal-store.enabled=true)
+ * 
+ * Le fichier = un en-tête + une table de hachage à adressage ouvert de slots de taille fixe :
+ * la position d'un slot est donnée par le hash de l'ID, donc la table sert à la fois d'index
+ * id -> offset et de stockage. Chaque slot contient directement les champs de ProductInfoDto
+ * (prix en long + échelle, stock en int) : une lecture ne matérialise ni Product ni BigDecimal
+ * intermédiaire, juste le DTO de la réponse.
+ * 
+ * Écritures (une à la fois) en place à chaque changement de produit ; lectures sans verrou
+ * grâce à un compteur de séquence par slot (impair = écriture en cours, on relit).
+ * Le fichier survit aux redémarrages : s'il est valide au démarrage on le garde (pas besoin de
+ * tout réécrire), mais on ne le sert qu'après une première resynchronisation réussie avec MongoDB
+ * (thread dédié), pour ne jamais répondre avec le stock d'avant l'arrêt.
+ * Un slot resté en cours d'écriture (crash) est supprimé à la réouverture, la resynchro le remet.
+ * La resynchro est refaite toutes les product.internal-store.resync-interval-ms ; si aucune n'a
+ * réussi depuis product.internal-store.max-staleness-ms, le store n'est plus servi (chemin normal).
+ * Un seul processus à la fois par fichier : il est verrouillé (FileLock) à l'ouverture.
+ * Attention : entre deux resynchros, le store ne voit que les écritures de cette instance.
+ * Avec plusieurs instances, un stock modifié ailleurs reste faux ici jusqu'à la resynchro suivante :
+ * à réserver à une seule instance qui écrit, ou baisser resync-interval-ms en conséquence.
+ * Un produit qui ne rentre pas dans le format (ID > 32 caractères ASCII, nom trop long,
+ * prix hors d'un long) n'est simplement pas stocké : la lecture retombe sur le chemin normal.
+ */
+@Component
+public class MappedProductInfoStore implements ProductChangeListener {
+    
+    private static final Logger logger = LoggerFactory.getLogger(MappedProductInfoStore.class);
+    
+    private static final int MAGIC = 0x50494631; // "PIF1"
+    private static final int LAYOUT_VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    
+    // Disposition d'un slot
+    static final int SEQ = 0;
+    private static final int STATE = 8;
+    private static final int ID_LENGTH = 9;
+    private static final int NAME_LENGTH = 10;
+    private static final int CATEGORY_LENGTH = 12;
+    private static final int HAS_PRICE = 14;
+    private static final int HAS_STOCK = 15;
+    private static final int PRODUCT_VERSION = 16;
+    private static final int PRICE_UNSCALED = 24;
+    private static final int PRICE_SCALE = 32;
+    private static final int STOCK = 36;
+    private static final int ID = 40;
+    private static final int ID_MAX = 32;
+    private static final int NAME = ID + ID_MAX;
+    private static final int NAME_MAX = 300; // 100 caractères en UTF-8
+    private static final int CATEGORY = NAME + NAME_MAX;
+    private static final int CATEGORY_MAX = 150; // 50 caractères en UTF-8
+    private static final int SLOT_SIZE = (CATEGORY + CATEGORY_MAX + 7) & ~7;
+    
+    private static final byte EMPTY = 0;
+    private static final byte USED = 1;
+    private static final byte DELETED = 2;
+    
+    private static final int RECONCILE_BATCH_SIZE = 1000;
+    // Au-delà, on laisse tomber le slot et on passe par le chemin normal plutôt que d'attendre
+    private static final int MAX_READ_RETRIES = 100;
+    
+    // Accès mémoire ordonnés sur le compteur de séquence (aligné sur 8 octets)
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    
+    @Autowired
+    private ProductRepository productRepository;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${product.internal-store.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${product.internal-store.path:./data/product-info.store}")
+    private String path;
+    
+    @Value("${product.internal-store.capacity:100000}")
+    private int capacity;
+    
+    @Value("${product.internal-store.max-staleness-ms:300000}")
+    private long maxStalenessMs;
+    
+    private FileChannel channel;
+    private FileLock lock;
+    private MappedByteBuffer buffer;
+    private int slotCount;
+    private volatile boolean ready;
+    // Fin de la dernière resynchro réussie (0 = jamais)
+    private volatile long lastSync;
+    private final AtomicBoolean reconcileQueued = new AtomicBoolean();
+    private final AtomicInteger records = new AtomicInteger();
+    private Set<String> changedDuringReconcile;
+    private Counter hits;
+    private Counter misses;
+    private Counter contended;
+    private final ExecutorService reconcileThread = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "internal-store-reconcile");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        // Facteur de charge max ~0.7 pour garder des sondages courts
+        slotCount = (int) Math.min(Integer.MAX_VALUE, (long) capacity * 10 / 7 + 1);
+        long size = HEADER_SIZE + (long) slotCount * SLOT_SIZE;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("product.internal-store.capacity trop grand pour un seul fichier mappé: " + capacity);
+        }
+        
+        Path file = Path.of(path);
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null; // déjà ouvert dans cette JVM
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IllegalStateException("Le fichier " + file + " est déjà utilisé par un autre processus (un seul par fichier)");
+        }
+        boolean reusable = channel.size() == size;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.order(ByteOrder.nativeOrder());
+        reusable = reusable && buffer.getInt(0) == MAGIC && buffer.getInt(4) == LAYOUT_VERSION && buffer.getInt(8) == slotCount;
+        
+        if (reusable) {
+            int count = 0;
+            int torn = 0;
+            for (int slot = 0; slot < slotCount; slot++) {
+                int base = offset(slot);
+                long seq = buffer.getLong(base + SEQ);
+                if ((seq & 1) != 0) {
+                    // Écriture interrompue par un crash : contenu pas fiable, on le supprime
+                    // (DELETED et pas EMPTY pour ne pas couper les chaînes de sondage)
+                    buffer.put(base + STATE, DELETED);
+                    buffer.putLong(base + SEQ, seq + 1);
+                    torn++;
+                } else if (buffer.get(base + STATE) == USED) {
+                    count++;
+                }
+            }
+            records.set(count);
+            // Pas encore ready : le contenu date d'avant l'arrêt, on attend la première resynchro
+            logger.info("Store des infos produit rouvert depuis {} ({} produits, {} slots interrompus supprimés), servi après resynchro",
+                       file, count, torn);
+        } else {
+            for (long position = 0; position < size; position += 8) {
+                buffer.putLong((int) position, 0L);
+            }
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, LAYOUT_VERSION);
+            buffer.putInt(8, slotCount);
+            logger.info("Store des infos produit initialisé dans {} ({} slots de {} octets)", file, slotCount, SLOT_SIZE);
+        }
+        
+        hits = meterRegistry.counter("product.internal-store.lookups", "result", "hit");
+        misses = meterRegistry.counter("product.internal-store.lookups", "result", "miss");
+        contended = meterRegistry.counter("product.internal-store.lookups", "result", "contended");
+        meterRegistry.gauge("product.internal-store.records", records);
+    }
+    
+    @PreDestroy
+    public void close() throws IOException {
+        reconcileThread.shutdownNow();
+        if (channel != null) {
+            buffer.force();
+            lock.release();
+            channel.close();
+        }
+    }
+    
+    /**
+     * Lance la resynchronisation sur son thread, sans bloquer le démarrage
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startReconcile() {
+        if (enabled && reconcileQueued.compareAndSet(false, true)) {
+            reconcileThread.execute(() -> {
+                reconcileQueued.set(false);
+                reconcile();
+            });
+        }
+    }
+    
+    /**
+     * Resynchro périodique : rattrape les écritures des autres instances et les échecs précédents
+     */
+    @Scheduled(initialDelayString = "${product.internal-store.resync-interval-ms:60000}",
+               fixedDelayString = "${product.internal-store.resync-interval-ms:60000}")
+    public void scheduledReconcile() {
+        if (!enabled) {
+            return;
+        }
+        if (ready && System.currentTimeMillis() - lastSync > maxStalenessMs) {
+            logger.warn("Store des infos produit pas resynchronisé depuis plus de {} ms, plus servi en attendant", maxStalenessMs);
+        }
+        startReconcile();
+    }
+    
+    /**
+     * Resynchronise le fichier avec MongoDB : ajoute/met à jour tous les produits et retire
+     * ceux qui n'existent plus. Les écritures qui arrivent pendant ce temps sont prioritaires.
+     */
+    void reconcile() {
+        synchronized (this) {
+            changedDuringReconcile = new HashSet<>();
+        }
+        long start = System.currentTimeMillis();
+        Set<String> seen = new HashSet<>();
+        try (Stream<Product> products = productRepository.streamAll(RECONCILE_BATCH_SIZE)) {
+            products.forEach(product -> {
+                seen.add(product.getId());
+                synchronized (this) {
+                    if (!changedDuringReconcile.contains(product.getId())) {
+                        put(product);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                changedDuringReconcile = null;
+            }
+            logger.error("Échec de la synchronisation du store des infos produit ({}), nouvel essai à la prochaine resynchro",
+                        ready ? "dernière réussie il y a " + (System.currentTimeMillis() - lastSync) + " ms" : "pas encore servi", e);
+            return;
+        }
+        
+        int removed = 0;
+        synchronized (this) {
+            for (int slot = 0; slot < slotCount; slot++) {
+                int base = offset(slot);
+                if (buffer.get(base + STATE) == USED) {
+                    String id = readAscii(base + ID, buffer.get(base + ID_LENGTH));
+                    if (!seen.contains(id) && !changedDuringReconcile.contains(id)) {
+                        markDeleted(base);
+                        removed++;
+                    }
+                }
+            }
+            changedDuringReconcile = null;
+        }
+        lastSync = System.currentTimeMillis();
+        ready = true;
+        logger.info("Store des infos produit synchronisé: {} produits, {} retirés en {} ms",
+                   records.get(), removed, System.currentTimeMillis() - start);
+    }
+    
+    public boolean isReady() {
+        return enabled && ready && System.currentTimeMillis() - lastSync <= maxStalenessMs;
+    }
+    
+    /**
+     * Infos d'un produit, ou null s'il n'est pas dans le store (à chercher par le chemin normal)
+     */
+    public ProductInfoDto get(String id) {
+        if (!isReady() || !isStorableId(id)) {
+            return null;
+        }
+        int slot = Math.floorMod(hash(id), slotCount);
+        for (int probes = 0; probes < slotCount; probes++) {
+            int base = offset(slot);
+            for (int attempt = 0; ; attempt++) {
+                if (attempt == MAX_READ_RETRIES) {
+                    // Slot bloqué en écriture (ne devrait pas arriver) : chemin normal
+                    contended.increment();
+                    return null;
+                }
+                long seq = (long) LONGS.getAcquire(buffer, base + SEQ);
+                if ((seq & 1) != 0) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                byte state = buffer.get(base + STATE);
+                if (state == EMPTY) {
+                    if (stable(base, seq)) {
+                        misses.increment();
+                        return null;
+                    }
+                    continue;
+                }
+                boolean match = state == USED && idEquals(base, id);
+                ProductInfoDto dto = match ? readDto(base, id) : null;
+                if (!stable(base, seq)) {
+                    continue; // écriture concurrente sur ce slot : on relit
+                }
+                if (match) {
+                    hits.increment();
+                    return dto;
+                }
+                break;
+            }
+            slot = slot + 1 == slotCount ? 0 : slot + 1;
+        }
+        misses.increment();
+        return null;
+    }
+    
+    @Override
+    public synchronized void onProductSaved(Product current) {
+        if (!enabled) {
+            return;
+        }
+        if (changedDuringReconcile != null) {
+            changedDuringReconcile.add(current.getId());
+        }
+        put(current);
+    }
+    
+    @Override
+    public synchronized void onProductDeleted(String productId) {
+        if (!enabled) {
+            return;
+        }
+        if (changedDuringReconcile != null) {
+            changedDuringReconcile.add(productId);
+        }
+        int base = find(productId);
+        if (base >= 0) {
+            markDeleted(base);
+        }
+    }
+    
+    /**
+     * Insère ou met à jour un produit (appelé sous le verrou)
+     */
+    private void put(Product product) {
+        String id = product.getId();
+        if (!isStorableId(id)) {
+            return;
+        }
+        byte[] name = bytesOrNull(product.getName(), NAME_MAX);
+        byte[] category = bytesOrNull(product.getCategory(), CATEGORY_MAX);
+        BigDecimal price = product.getPrice();
+        boolean priceFits = price == null || price.unscaledValue().bitLength() < 64;
+        if ((product.getName() != null && name == null) || (product.getCategory() != null && category == null) || !priceFits) {
+            // Ne rentre pas dans le format : on retire l'ancienne version pour ne pas servir du périmé
+            int existing = find(id);
+            if (existing >= 0) {
+                markDeleted(existing);
+            }
+            return;
+        }
+        
+        int base = find(id);
+        boolean insert = base < 0;
+        if (insert) {
+            base = freeSlot(id);
+            if (base < 0) {
+                logger.warn("Store des infos produit plein ({} produits), produit {} non stocké", records.get(), id);
+                return;
+            }
+        }
+        
+        long seq = (long) LONGS.getAcquire(buffer, base + SEQ);
+        LONGS.setVolatile(buffer, base + SEQ, seq + 1);
+        buffer.put(base + ID_LENGTH, (byte) id.length());
+        for (int i = 0; i < id.length(); i++) {
+            buffer.put(base + ID + i, (byte) id.charAt(i));
+        }
+        writeBytes(base + NAME, base + NAME_LENGTH, name);
+        writeBytes(base + CATEGORY, base + CATEGORY_LENGTH, category);
+        buffer.put(base + HAS_PRICE, (byte) (price != null ? 1 : 0));
+        if (price != null) {
+            buffer.putLong(base + PRICE_UNSCALED, price.unscaledValue().longValue());
+            buffer.putInt(base + PRICE_SCALE, price.scale());
+        }
+        buffer.put(base + HAS_STOCK, (byte) (product.getStock() != null ? 1 : 0));
+        buffer.putInt(base + STOCK, product.getStock() != null ? product.getStock() : 0);
+        buffer.putLong(base + PRODUCT_VERSION, product.getVersion() != null ? product.getVersion() : -1L);
+        buffer.put(base + STATE, USED);
+        LONGS.setRelease(buffer, base + SEQ, seq + 2);
+        if (insert) {
+            records.incrementAndGet();
+        }
+    }
+    
+    private void markDeleted(int base) {
+        int slot = (base - HEADER_SIZE) / SLOT_SIZE;
+        int next = slot + 1 == slotCount ? 0 : slot + 1;
+        // Si le slot suivant est vide, aucun sondage ne passe par ici pour aller plus loin :
+        // on peut libérer ce slot (et les supprimés qui le précèdent) au lieu de laisser une pierre tombale
+        if (buffer.get(offset(next) + STATE) != EMPTY) {
+            setState(base, DELETED);
+        } else {
+            setState(base, EMPTY);
+            int previous = slot == 0 ? slotCount - 1 : slot - 1;
+            while (previous != slot && buffer.get(offset(previous) + STATE) == DELETED) {
+                setState(offset(previous), EMPTY);
+                previous = previous == 0 ? slotCount - 1 : previous - 1;
+            }
+        }
+        records.decrementAndGet();
+    }
+    
+    private void setState(int base, byte state) {
+        long seq = (long) LONGS.getAcquire(buffer, base + SEQ);
+        LONGS.setVolatile(buffer, base + SEQ, seq + 1);
+        buffer.put(base + STATE, state);
+        LONGS.setRelease(buffer, base + SEQ, seq + 2);
+    }
+    
+    /**
+     * Offset du slot qui contient cet ID, -1 s'il n'y est pas (appelé sous le verrou)
+     */
+    int find(String id) {
+        if (!isStorableId(id)) {
+            return -1;
+        }
+        int slot = Math.floorMod(hash(id), slotCount);
+        for (int probes = 0; probes < slotCount; probes++) {
+            int base = offset(slot);
+            byte state = buffer.get(base + STATE);
+            if (state == EMPTY) {
+                return -1;
+            }
+            if (state == USED && idEquals(base, id)) {
+                return base;
+            }
+            slot = slot + 1 == slotCount ? 0 : slot + 1;
+        }
+        return -1;
+    }
+    
+    /**
+     * Premier slot libre (vide ou supprimé) sur le chemin de sondage de cet ID
+     */
+    private int freeSlot(String id) {
+        if (records.get() >= capacity) {
+            return -1;
+        }
+        int slot = Math.floorMod(hash(id), slotCount);
+        for (int probes = 0; probes < slotCount; probes++) {
+            int base = offset(slot);
+            if (buffer.get(base + STATE) != USED) {
+                return base;
+            }
+            slot = slot + 1 == slotCount ? 0 : slot + 1;
+        }
+        return -1;
+    }
+    
+    private boolean stable(int base, long seq) {
+        VarHandle.acquireFence();
+        return (long) LONGS.getAcquire(buffer, base + SEQ) == seq;
+    }
+    
+    private ProductInfoDto readDto(int base, String id) {
+        String name = readUtf8(base + NAME, buffer.getShort(base + NAME_LENGTH), NAME_MAX);
+        String category = readUtf8(base + CATEGORY, buffer.getShort(base + CATEGORY_LENGTH), CATEGORY_MAX);
+        BigDecimal price = buffer.get(base + HAS_PRICE) != 0
+                ? BigDecimal.valueOf(buffer.getLong(base + PRICE_UNSCALED), buffer.getInt(base + PRICE_SCALE))
+                : null;
+        Integer stock = buffer.get(base + HAS_STOCK) != 0 ? buffer.getInt(base + STOCK) : null;
+        long version = buffer.getLong(base + PRODUCT_VERSION);
+        
+        ProductInfoDto dto = new ProductInfoDto(id, name, price, category, stock);
+        dto.setVersion(version >= 0 ? version : null);
+        return dto;
+    }
+    
+    private boolean idEquals(int base, String id) {
+        if (buffer.get(base + ID_LENGTH) != id.length()) {
+            return false;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            if (buffer.get(base + ID + i) != (byte) id.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private String readUtf8(int position, short length, int max) {
+        if (length < 0) {
+            return null; // -1 = null
+        }
+        byte[] bytes = new byte[Math.min(length, max)];
+        buffer.get(position, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private String readAscii(int position, byte length) {
+        byte[] bytes = new byte[Math.min(Math.max(length, 0), ID_MAX)];
+        buffer.get(position, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+    
+    private void writeBytes(int position, int lengthPosition, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putShort(lengthPosition, (short) -1);
+            return;
+        }
+        buffer.putShort(lengthPosition, (short) bytes.length);
+        buffer.put(position, bytes);
+    }
+    
+    private static byte[] bytesOrNull(String value, int max) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return bytes.length <= max ? bytes : null;
+    }
+    
+    private static boolean isStorableId(String id) {
+        if (id == null || id.isEmpty() || id.length() > ID_MAX) {
+            return false;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            if (id.charAt(i) > 127) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * FNV-1a sur les caractères de l'ID (pas d'allocation, stable d'un redémarrage à l'autre)
+     */
+    static int hash(String id) {
+        int hash = 0x811c9dc5;
+        for (int i = 0; i < id.length(); i++) {
+            hash ^= id.charAt(i);
+            hash *= 0x01000193;
+        }
+        return hash;
+    }
+    
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+}
@@ -0,0 +1,149 @@
+package com.microcommerce.productservice.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.microcommerce.productservice.entity.Product;
+import com.microcommerce.productservice.service.ProductChangeListener;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+/**
+ * Cache en mémoire des produits par ID
+ *
+ * Le endpoint /internal/{id} est appelé par order-service pour chaque ligne de commande,
+ * donc on garde les produits chauds en mémoire au lieu d'aller taper MongoDB à chaque fois.
+ * Le cache est borné (taille max + TTL) et vidé à chaque écriture sur un produit.
+ * Les stats (hit/miss/eviction) sont visibles dans /actuator/metrics sous cache.*
+ */
+@Component
+public class ProductCache implements ProductChangeListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductCache.class);
+
+    public static final String CACHE_NAME = "products";
+
+    // Nombre de compteurs d'écritures (plusieurs IDs peuvent partager le même, ça ne coûte qu'un rechargement)
+    private static final int WRITE_STRIPES = 1024;
+
+    @Value("${product.cache.maximum-size:10000}")
+    private long maximumSize;
+
+    @Value("${product.cache.ttl:300}")
+    private long ttlSeconds;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Cache<String, Product> cache;
+
+    // Incrémenté à chaque evict : un chargement groupé commencé avant ne doit pas rester en cache
+    private final AtomicLongArray writeGenerations = new AtomicLongArray(WRITE_STRIPES);
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+
+        // Expose cache.gets{result=hit|miss}, cache.evictions, cache.size... dans l'actuator
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        logger.info("Cache produits initialisé (taille max: {}, TTL: {}s)", maximumSize, ttlSeconds);
+    }
+
+    /**
+     * Récupère un produit depuis le cache, ou le charge via le loader si absent.
+     * Le loader renvoie null si le produit n'existe pas (rien n'est mis en cache dans ce cas)
+     */
+    public Product get(String id, Function<String, Product> loader) {
+        return cache.get(id, loader);
+    }
+
+    /**
+     * Récupère plusieurs produits d'un coup : les absents du cache sont chargés en un seul appel
+     * au loader. Les IDs introuvables ne sont simplement pas dans la map retournée
+     *
+     * Contrairement à get(), le chargement se fait hors de tout verrou Caffeine : un evict arrivé
+     * pendant le findAllById ne l'empêcherait pas d'insérer l'ancienne version. On note donc la
+     * génération d'écriture de chaque ID avant de charger, et on retire après coup les entrées
+     * dont la génération a bougé (le résultat est quand même rendu à l'appelant, lu avant l'écriture)
+     */
+    public Map<String, Product> getAll(Iterable<String> ids, Function<Set<? extends String>, Map<String, Product>> loader) {
+        Map<String, Product> result = new HashMap<>(cache.getAllPresent(ids));
+        Set<String> missing = new LinkedHashSet<>();
+        for (String id : ids) {
+            if (!result.containsKey(id)) {
+                missing.add(id);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        Map<String, Long> generations = new HashMap<>();
+        for (String id : missing) {
+            generations.put(id, writeGenerations.get(stripe(id)));
+        }
+        Map<String, Product> loaded = loader.apply(missing);
+        for (Map.Entry<String, Product> entry : loaded.entrySet()) {
+            Long generation = generations.get(entry.getKey());
+            if (generation == null || entry.getValue() == null) {
+                continue;
+            }
+            cache.put(entry.getKey(), entry.getValue());
+            // Vérifié après le put : un evict concurrent a soit déjà bougé la génération, soit retirera l'entrée lui-même
+            if (writeGenerations.get(stripe(entry.getKey())) != generation) {
+                cache.asMap().remove(entry.getKey(), entry.getValue());
+            }
+            result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+    
+    /**
+     * Invalide l'entrée d'un produit - à appeler après chaque écriture en base
+     */
+    public void evict(String id) {
+        if (id != null) {
+            writeGenerations.incrementAndGet(stripe(id));
+            cache.invalidate(id);
+            logger.debug("Produit {} retiré du cache", id);
+        }
+    }
+
+    @Override
+    public void onProductSaved(Product current) {
+        evict(current.getId());
+    }
+    
+    @Override
+    public void onProductDeleted(String productId) {
+        evict(productId);
+    }
+    
+    private static int stripe(String id) {
+        return (id.hashCode() & Integer.MAX_VALUE) % WRITE_STRIPES;
+    }
+
+    /**
+     * Vide complètement le cache
+     */
+    public void clear() {
+        cache.invalidateAll();
+    }
+}
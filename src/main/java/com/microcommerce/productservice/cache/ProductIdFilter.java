@@ -0,0 +1,296 @@
+package com.microcommerce.productservice.cache;
+
+import com.microcommerce.productservice.entity.Product;
+import com.microcommerce.productservice.repository.ProductRepository;
+import com.microcommerce.productservice.service.ProductChangeListener;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+/**
+ * Filtre de Bloom sur les IDs produit, pour répondre 404 sans aller-retour MongoDB
+ * (product.id-filter.enabled=true)
+ * 
+ * Les IDs bidons (scrapers, vieux paniers, lignes de commande sur des produits supprimés)
+ * coûtaient chacun un findById/existsById. Si le filtre dit "absent", c'est sûr : on court-circuite.
+ * S'il dit "peut-être", on fait la requête normale (faux positif ~product.id-filter.fpp).
+ * 
+ * Un filtre de Bloom ne sait pas retirer un élément : une suppression laisse ses bits à 1,
+ * ce qui ne fait que des faux positifs en plus. Le filtre est donc reconstruit depuis MongoDB
+ * régulièrement, et plus tôt s'il se dégrade (trop de suppressions ou plus d'IDs que prévu).
+ * Attention : comme le cache produits, chaque instance ne voit que ses propres créations,
+ * à n'activer qu'avec une seule instance qui écrit (sinon un produit créé ailleurs serait en 404
+ * jusqu'à la prochaine reconstruction).
+ */
+@Component
+public class ProductIdFilter implements ProductChangeListener {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ProductIdFilter.class);
+    
+    private static final int BUILD_BATCH_SIZE = 1000;
+    
+    @Autowired
+    private ProductRepository productRepository;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${product.id-filter.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${product.id-filter.expected-insertions:100000}")
+    private long expectedInsertions;
+    
+    @Value("${product.id-filter.fpp:0.01}")
+    private double fpp;
+    
+    @Value("${product.id-filter.rebuild-interval-ms:3600000}")
+    private long rebuildIntervalMs;
+    
+    // Filtre courant, remplacé d'un coup à chaque reconstruction
+    private volatile BloomFilter filter;
+    // IDs créés pendant une reconstruction, à rajouter dans le nouveau filtre avant de le publier
+    private Set<String> savedDuringRebuild;
+    private volatile long lastBuild;
+    private final AtomicLong deletedSinceBuild = new AtomicLong();
+    
+    private Counter rejected;
+    private Counter passed;
+    private Counter falsePositives;
+    private Timer rebuilds;
+    
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        rejected = meterRegistry.counter("product.id-filter.lookups", "result", "absent");
+        passed = meterRegistry.counter("product.id-filter.lookups", "result", "maybe");
+        falsePositives = meterRegistry.counter("product.id-filter.false-positives");
+        rebuilds = Timer.builder("product.id-filter.rebuild")
+                .description("Reconstructions complètes du filtre depuis MongoDB")
+                .register(meterRegistry);
+        Gauge.builder("product.id-filter.expected-fpp", this, ProductIdFilter::expectedFpp)
+                .description("Taux de faux positifs attendu vu le remplissage actuel du filtre")
+                .register(meterRegistry);
+        Gauge.builder("product.id-filter.stale-deletes", deletedSinceBuild, AtomicLong::get)
+                .description("Suppressions encore présentes dans le filtre (jusqu'à la prochaine reconstruction)")
+                .register(meterRegistry);
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        if (!enabled) {
+            return;
+        }
+        rebuilds.record(this::rebuild);
+    }
+    
+    /**
+     * Reconstruit le filtre si l'intervalle est écoulé ou s'il s'est trop dégradé
+     */
+    @Scheduled(fixedDelayString = "${product.id-filter.check-interval-ms:60000}")
+    public void rebuildIfNeeded() {
+        BloomFilter current = filter;
+        if (!enabled || current == null) {
+            return;
+        }
+        boolean expired = System.currentTimeMillis() - lastBuild >= rebuildIntervalMs;
+        boolean degraded = current.insertions() > current.capacity()
+                || deletedSinceBuild.get() > current.insertions() / 10;
+        if (expired || degraded) {
+            logger.info("Reconstruction du filtre d'IDs produit ({})", degraded ? "dégradé" : "périodique");
+            build();
+        }
+    }
+    
+    private void rebuild() {
+        long start = System.currentTimeMillis();
+        synchronized (this) {
+            savedDuringRebuild = new HashSet<>();
+        }
+        long count = productRepository.count();
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedInsertions, count * 2), fpp);
+        long deletesBefore = deletedSinceBuild.get();
+        try (Stream<Product> products = productRepository.streamAll(BUILD_BATCH_SIZE)) {
+            products.forEach(product -> rebuilt.put(product.getId()));
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                savedDuringRebuild = null;
+            }
+            logger.error("Échec de la construction du filtre d'IDs produit, on garde l'ancien", e);
+            return;
+        }
+        synchronized (this) {
+            savedDuringRebuild.forEach(rebuilt::put);
+            savedDuringRebuild = null;
+            filter = rebuilt;
+        }
+        // Les suppressions arrivées pendant le parcours sont peut-être encore dans le nouveau filtre
+        deletedSinceBuild.addAndGet(-deletesBefore);
+        lastBuild = System.currentTimeMillis();
+        logger.info("Filtre d'IDs produit construit: {} IDs, {} bits, {} hachages en {} ms",
+                   rebuilt.insertions(), rebuilt.bitCount(), rebuilt.hashCount(), System.currentTimeMillis() - start);
+    }
+    
+    /**
+     * false = le produit n'existe pas à coup sûr ; true = il existe peut-être (filtre pas prêt compris)
+     */
+    public boolean mightContain(String id) {
+        BloomFilter current = filter;
+        if (current == null || id == null) {
+            return true;
+        }
+        if (current.mightContain(id)) {
+            passed.increment();
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+    
+    /**
+     * À appeler quand le filtre a dit "peut-être" mais que MongoDB n'a rien trouvé
+     */
+    public void recordMiss() {
+        if (filter != null) {
+            falsePositives.increment();
+        }
+    }
+    
+    @Override
+    public synchronized void onProductSaved(Product current) {
+        if (!enabled) {
+            return;
+        }
+        if (filter != null) {
+            filter.put(current.getId());
+        }
+        if (savedDuringRebuild != null) {
+            savedDuringRebuild.add(current.getId());
+        }
+    }
+    
+    @Override
+    public void onProductDeleted(String productId) {
+        if (enabled) {
+            deletedSinceBuild.incrementAndGet();
+        }
+    }
+    
+    private double expectedFpp() {
+        BloomFilter current = filter;
+        return current != null ? current.expectedFpp() : 0.0;
+    }
+    
+    /**
+     * Filtre de Bloom classique : bits dans un AtomicLongArray (ajouts sans verrou),
+     * k positions tirées d'un hash 64 bits par double hachage
+     */
+    static final class BloomFilter {
+        
+        private final AtomicLongArray words;
+        private final long bitCount;
+        private final int hashCount;
+        private final long capacity;
+        private final AtomicLong setBits = new AtomicLong();
+        private final AtomicLong insertions = new AtomicLong();
+        
+        BloomFilter(long capacity, double fpp) {
+            long bits = (long) Math.ceil(-capacity * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+            int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, (Math.max(bits, 64) + 63) / 64);
+            this.words = new AtomicLongArray(wordCount);
+            this.bitCount = (long) wordCount * 64;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / capacity * Math.log(2)));
+            this.capacity = capacity;
+        }
+        
+        void put(String id) {
+            long hash = hash(id);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            boolean changed = false;
+            for (int i = 1; i <= hashCount; i++) {
+                long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long previous = words.getAndAccumulate(word, mask, (current, m) -> current | m);
+                if ((previous & mask) == 0) {
+                    setBits.incrementAndGet();
+                    changed = true;
+                }
+            }
+            if (changed) {
+                insertions.incrementAndGet();
+            }
+        }
+        
+        boolean mightContain(String id) {
+            long hash = hash(id);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= hashCount; i++) {
+                long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        /**
+         * (bits à 1 / bits)^k : probabilité qu'un ID absent tombe sur k bits déjà à 1
+         */
+        double expectedFpp() {
+            return Math.pow((double) setBits.get() / bitCount, hashCount);
+        }
+        
+        long insertions() {
+            return insertions.get();
+        }
+        
+        long capacity() {
+            return capacity;
+        }
+        
+        long bitCount() {
+            return bitCount;
+        }
+        
+        int hashCount() {
+            return hashCount;
+        }
+        
+        /**
+         * FNV-1a 64 bits sur les caractères puis mélange final (splitmix64)
+         */
+        private static long hash(String id) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < id.length(); i++) {
+                hash ^= id.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            hash ^= hash >>> 30;
+            hash *= 0xbf58476d1ce4e5b9L;
+            hash ^= hash >>> 27;
+            hash *= 0x94d049bb133111ebL;
+            return hash ^ (hash >>> 31);
+        }
+    }
+}
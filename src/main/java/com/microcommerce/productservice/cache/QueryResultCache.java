@@ -0,0 +1,136 @@
+package com.microcommerce.productservice.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.microcommerce.productservice.entity.Product;
+import com.microcommerce.productservice.service.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+/**
+ * Cache des résultats des requêtes de liste et de recherche (catégorie, en stock, stock faible, recherches)
+ * 
+ * La clé = la requête + ses paramètres normalisés + une génération du catalogue
+ * (CatalogVersions : par catégorie pour les listes d'une catégorie, globale pour le reste).
+ * Une écriture ne supprime rien : elle incrémente la génération, les anciennes entrées ne sont
+ * plus jamais demandées et partent avec l'éviction. Invalidation en O(1) quel que soit le nombre de clés.
+ * 
+ * Le cache est borné en poids (taille estimée des produits en octets) plutôt qu'en nombre d'entrées,
+ * une liste "en stock" pouvant peser mille fois une recherche précise. Le TTL borne le retard
+ * sur les écritures faites par les autres instances, comme pour le cache produits.
+ * Les listes renvoyées sont partagées entre les appelants : il ne faut pas les modifier.
+ */
+@Component
+public class QueryResultCache {
+    
+    private static final Logger logger = LoggerFactory.getLogger(QueryResultCache.class);
+    
+    public static final String CACHE_NAME = "product-queries";
+    
+    // Estimations grossières : en-têtes d'objets, BigDecimal, Integer, Long...
+    private static final int PRODUCT_OVERHEAD_BYTES = 160;
+    private static final int ENTRY_OVERHEAD_BYTES = 64;
+    
+    @Value("${product.query-cache.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${product.query-cache.maximum-weight:67108864}")
+    private long maximumWeight;
+    
+    @Value("${product.query-cache.ttl:60}")
+    private long ttlSeconds;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Autowired
+    private SingleFlight singleFlight;
+    
+    private Cache<QueryKey, List<Product>> cache;
+    
+    /**
+     * Clé d'une requête : nom, paramètres normalisés, champs demandés (triés, null = tous) et génération
+     */
+    public record QueryKey(String query, String params, String fields, long generation, long originGeneration) {
+        
+        public static QueryKey of(String query, String params, Set<String> fields, long generation, long originGeneration) {
+            return new QueryKey(query, params, fields != null ? String.join(",", new TreeSet<>(fields)) : null,
+                    generation, originGeneration);
+        }
+        
+        @Override
+        public String toString() {
+            return "query:" + query + ":" + generation + "." + originGeneration + ":" + fields + ":" + params;
+        }
+    }
+    
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher((QueryKey key, List<Product> products) -> weigh(key, products))
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        logger.info("Cache des requêtes initialisé (poids max: {} octets, TTL: {}s)", maximumWeight, ttlSeconds);
+    }
+    
+    /**
+     * Résultat en cache pour cette clé, sinon exécute la requête (une seule fois pour les appels simultanés)
+     * et garde le résultat
+     */
+    public List<Product> get(QueryKey key, Supplier<List<Product>> query) {
+        if (!enabled) {
+            return singleFlight.execute(key.toString(), query);
+        }
+        List<Product> cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        // Pas de cache.get(key, loader) : la requête MongoDB bloquerait les autres clés du même segment
+        List<Product> result = singleFlight.execute(key.toString(), () -> List.copyOf(query.get()));
+        cache.put(key, result);
+        return result;
+    }
+    
+    /**
+     * Vide complètement le cache
+     */
+    public void clear() {
+        if (enabled) {
+            cache.invalidateAll();
+        }
+    }
+    
+    private static int weigh(QueryKey key, List<Product> products) {
+        long bytes = ENTRY_OVERHEAD_BYTES + 2L * (key.params() != null ? key.params().length() : 0);
+        for (Product product : products) {
+            bytes += PRODUCT_OVERHEAD_BYTES
+                    + length(product.getId()) + length(product.getName())
+                    + length(product.getDescription()) + length(product.getCategory());
+        }
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+    
+    private static int length(String value) {
+        // Strings compactes (Latin-1) : ~1 octet par caractère + en-tête
+        return value != null ? 40 + value.length() : 0;
+    }
+}
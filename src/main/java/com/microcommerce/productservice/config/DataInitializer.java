@@ -2,6 +2,7 @@ package com.microcommerce.productservice.config;
 
 import com.microcommerce.productservice.entity.Product;
 import com.microcommerce.productservice.repository.ProductRepository;
+import com.microcommerce.productservice.service.ProductChangeNotifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,6 +23,9 @@ public class DataInitializer implements CommandLineRunner {
     @Autowired
     private ProductRepository productRepository;
     
+    @Autowired
+    private ProductChangeNotifier productChangeNotifier;
+    
     @Override
     public void run(String... args) throws Exception {
         // On vérifie si on a déjà des données
@@ -67,6 +71,8 @@ public class DataInitializer implements CommandLineRunner {
     
     private void createProduct(String name, String description, BigDecimal price, Integer stock, String category) {
         Product product = new Product(name, description, price, stock, category);
-        productRepository.save(product);
+        product.setVersion(1L);
+        // On prévient les vues en mémoire (versions/ETags...) : le serveur web accepte déjà des requêtes
+        productChangeNotifier.productSaved(productRepository.save(product));
     }
 }
\ No newline at end of file
@@ -0,0 +1,55 @@
+package com.microcommerce.productservice.config;
+
+import com.microcommerce.productservice.entity.OutboxEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Configuration du mode outbox (product.outbox.enabled=true)
+ * 
+ * Active les transactions MongoDB pour que le produit et son événement soient écrits
+ * ensemble, uniquement sur les écritures de ProductService (via outboxTransactionTemplate).
+ * ATTENTION : les transactions MongoDB demandent un replica set (même à un seul nœud,
+ * ex: mongod --replSet rs0), un mongod standalone refusera les écritures.
+ */
+@Configuration
+@ConditionalOnProperty(name = "product.outbox.enabled", havingValue = "true")
+public class OutboxConfig {
+    
+    private static final Logger logger = LoggerFactory.getLogger(OutboxConfig.class);
+    
+    public static final String TRANSACTION_TEMPLATE = "outboxTransactionTemplate";
+    
+    /**
+     * Le MongoTransactionManager n'est volontairement pas un bean : s'il en était un, tous les
+     * @Transactional(readOnly = true) des lectures ouvriraient une session et une transaction MongoDB
+     */
+    @Bean(name = TRANSACTION_TEMPLATE)
+    public TransactionTemplate outboxTransactionTemplate(MongoDatabaseFactory databaseFactory) {
+        MongoTransactionManager transactionManager = new MongoTransactionManager(databaseFactory);
+        transactionManager.afterPropertiesSet();
+        return new TransactionTemplate(transactionManager);
+    }
+    
+    /**
+     * Crée la collection outbox à l'avance : avant MongoDB 4.4 on ne peut pas créer
+     * une collection à l'intérieur d'une transaction
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void createOutboxCollection(ApplicationReadyEvent event) {
+        MongoTemplate mongoTemplate = event.getApplicationContext().getBean(MongoTemplate.class);
+        if (!mongoTemplate.collectionExists(OutboxEvent.class)) {
+            mongoTemplate.createCollection(OutboxEvent.class);
+            logger.info("Collection outbox créée");
+        }
+    }
+}
@@ -1,9 +1,18 @@
 package com.microcommerce.productservice.config;
 
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.config.RetryInterceptorBuilder;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.retry.MessageBatchRecoverer;
+import org.springframework.amqp.support.converter.ContentTypeDelegatingMessageConverter;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -36,6 +45,23 @@ public class RabbitMQConfig {
         return new TopicExchange(PRODUCT_EXCHANGE);
     }
     
+    // Demandes de snapshots envoyées par les consommateurs des événements produits
+    public static final String PRODUCT_SNAPSHOT_REQUEST_QUEUE = "product-service.snapshot.request.queue";
+    public static final String PRODUCT_SNAPSHOT_REQUEST_ROUTING_KEY = "product.snapshot.request";
+    
+    @Bean
+    public Queue productSnapshotRequestQueue() {
+        return QueueBuilder.durable(PRODUCT_SNAPSHOT_REQUEST_QUEUE).build();
+    }
+    
+    @Bean
+    public Binding productSnapshotRequestBinding() {
+        return BindingBuilder
+            .bind(productSnapshotRequestQueue())
+            .to(productExchange())
+            .with(PRODUCT_SNAPSHOT_REQUEST_ROUTING_KEY);
+    }
+    
     // Configuration pour écouter les événements commandes
     public static final String ORDER_EXCHANGE = "order.exchange";
     public static final String ORDER_ALL_ROUTING_KEY = "order.*";
@@ -59,6 +85,87 @@ public class RabbitMQConfig {
             .with(ORDER_ALL_ROUTING_KEY);
     }
     
+    // Mode batch pour les événements commandes (product.order-events.batch.enabled=true)
+    public static final String ORDER_BATCH_CONTAINER_FACTORY = "orderBatchContainerFactory";
+    // Messages commandes qui échouent encore après les nouvelles tentatives
+    public static final String PRODUCT_SERVICE_ORDER_DLQ = "product-service.order.dlq";
+    
+    @Bean
+    @ConditionalOnExpression("${product.order-events.batch.enabled:false} or ${product.order-events.partitioned.enabled:false}")
+    public Queue productServiceOrderDlq() {
+        return QueueBuilder.durable(PRODUCT_SERVICE_ORDER_DLQ).build();
+    }
+    
+    /**
+     * Container qui livre les événements commandes par lots : jusqu'à batch.size messages,
+     * ou ce qui est arrivé quand la queue reste muette pendant batch.flush-interval-ms.
+     * Attention, ce n'est pas une fenêtre fixe : receiveTimeout est l'attente max entre deux
+     * messages (spring-rabbit 3.1.0 n'a pas de batchReceiveTimeout). Sous un filet continu
+     * de messages, un lot reste ouvert jusqu'à batch.size, donc le premier message peut attendre
+     * jusqu'à (batch.size - 1) x flush-interval-ms : baisser batch.size pour resserrer cette borne.
+     * Le lot entier est acké
+     * une fois que le listener a rendu la main sans erreur. En cas d'erreur il est rejoué
+     * batch.max-attempts fois (les deltas de stock sont idempotents), puis ses messages sont
+     * republiés dans la DLQ et acquittés : plus de boucle infinie sur un message empoisonné.
+     * On publie vers la DLQ plutôt que d'ajouter un x-dead-letter-exchange à la queue existante,
+     * qu'on ne peut pas redéclarer avec d'autres arguments sur un broker déjà en place
+     */
+    @Bean(name = ORDER_BATCH_CONTAINER_FACTORY)
+    @ConditionalOnProperty(name = "product.order-events.batch.enabled", havingValue = "true")
+    public SimpleRabbitListenerContainerFactory orderBatchContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            @Value("${product.order-events.batch.size:100}") int batchSize,
+            @Value("${product.order-events.batch.flush-interval-ms:200}") long flushIntervalMs,
+            @Value("${product.order-events.batch.concurrency:1}") int concurrency,
+            @Value("${product.order-events.batch.max-attempts:3}") int maxAttempts,
+            RabbitTemplate rabbitTemplate) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        // Silence max entre deux messages avant de livrer le lot, pas une durée max du lot (voir plus haut)
+        factory.setReceiveTimeout(flushIntervalMs);
+        factory.setPrefetchCount(batchSize);
+        factory.setConcurrentConsumers(concurrency);
+        factory.setMaxConcurrentConsumers(concurrency);
+        factory.setAcknowledgeMode(AcknowledgeMode.AUTO);
+        factory.setDefaultRequeueRejected(false);
+        MessageBatchRecoverer toDlq = (messages, cause) ->
+                messages.forEach(message -> rabbitTemplate.send("", PRODUCT_SERVICE_ORDER_DLQ, message));
+        factory.setAdviceChain(RetryInterceptorBuilder.stateless()
+                .maxAttempts(maxAttempts)
+                .backOffOptions(200, 2.0, 2000)
+                .recoverer(toDlq)
+                .build());
+        return factory;
+    }
+    
+    // Mode parallèle par produit pour les événements commandes (product.order-events.partitioned.enabled=true)
+    public static final String ORDER_PARTITIONED_CONTAINER_FACTORY = "orderPartitionedContainerFactory";
+    
+    /**
+     * Un seul consommateur (pour garder l'ordre de la queue) avec ack manuel : c'est le listener
+     * qui acquitte chaque message une fois toutes ses lignes traitées par les shards
+     * (ou l'envoie dans la DLQ si une ligne échoue encore après les nouvelles tentatives).
+     * Le prefetch borne le nombre de messages en cours de traitement
+     */
+    @Bean(name = ORDER_PARTITIONED_CONTAINER_FACTORY)
+    @ConditionalOnProperty(name = "product.order-events.partitioned.enabled", havingValue = "true")
+    public SimpleRabbitListenerContainerFactory orderPartitionedContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            @Value("${product.order-events.partitioned.prefetch:250}") int prefetch) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setConcurrentConsumers(1);
+        factory.setMaxConcurrentConsumers(1);
+        factory.setPrefetchCount(prefetch);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        return factory;
+    }
+    
     // Configuration pour écouter les événements utilisateurs
     public static final String USER_EXCHANGE = "user.exchange";
     public static final String USER_ALL_ROUTING_KEY = "user.*";
@@ -140,21 +247,46 @@ public class RabbitMQConfig {
     }
 
     /**
-     * Convertisseur JSON pour sérialiser/désérialiser les messages
-     * Plus pratique que le sérialiseur par défaut
+     * Convertisseur des messages, choisi d'après le header content-type
+     * 
+     * En réception, JSON (application/json) et Smile (application/x-jackson-smile) sont
+     * acceptés tous les deux, donc les producteurs JSON existants continuent de marcher
+     * pendant la migration. En envoi, le format vient de product.messaging.format
+     * (json par défaut) : on ne passe en smile qu'une fois tous les consommateurs à jour.
      */
     @Bean
-    public Jackson2JsonMessageConverter messageConverter() {
-        return new Jackson2JsonMessageConverter();
+    public MessageConverter messageConverter(@Value("${product.messaging.format:json}") String format) {
+        Jackson2JsonMessageConverter json = new Jackson2JsonMessageConverter();
+        SmileMessageConverter smile = new SmileMessageConverter();
+        
+        MessageConverter outgoing = switch (format.toLowerCase()) {
+            case "json" -> json;
+            case "smile" -> smile;
+            default -> throw new IllegalArgumentException("product.messaging.format inconnu (json ou smile): " + format);
+        };
+        
+        ContentTypeDelegatingMessageConverter converter = new ContentTypeDelegatingMessageConverter(outgoing) {
+            @Override
+            protected MessageConverter getConverterForContentType(String contentType) {
+                // "application/json;charset=UTF-8" doit tomber sur le convertisseur JSON
+                if (contentType != null && contentType.indexOf(';') >= 0) {
+                    contentType = contentType.substring(0, contentType.indexOf(';')).trim();
+                }
+                return super.getConverterForContentType(contentType);
+            }
+        };
+        converter.addDelegate(MessageProperties.CONTENT_TYPE_JSON, json);
+        converter.addDelegate(SmileMessageConverter.CONTENT_TYPE, smile);
+        return converter;
     }
 
     /**
-     * Template RabbitMQ avec le convertisseur JSON
+     * Template RabbitMQ avec le convertisseur des messages
      */
     @Bean
-    public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory) {
+    public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory, MessageConverter messageConverter) {
         RabbitTemplate template = new RabbitTemplate(connectionFactory);
-        template.setMessageConverter(messageConverter());
+        template.setMessageConverter(messageConverter);
         return template;
     }
 }
\ No newline at end of file
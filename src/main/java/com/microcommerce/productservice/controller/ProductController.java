@@ -1,19 +1,34 @@
 package com.microcommerce.productservice.controller;
 
 import com.microcommerce.productservice.entity.Product;
+import com.microcommerce.productservice.dto.CatalogStatsDto;
+import com.microcommerce.productservice.dto.CursorPageDto;
+import com.microcommerce.productservice.dto.FacetedSearchDto;
+import com.microcommerce.productservice.dto.ProductBatchInfoDto;
 import com.microcommerce.productservice.dto.ProductInfoDto;
+import com.microcommerce.productservice.search.FacetQuery;
+import com.microcommerce.productservice.service.CatalogExportService;
+import com.microcommerce.productservice.service.InsufficientStockException;
+import com.microcommerce.productservice.service.ProductFields;
 import com.microcommerce.productservice.service.ProductService;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 
 /**
  * Notre controller REST pour gérer les produits
@@ -29,14 +44,53 @@ public class ProductController {
     @Autowired
     private ProductService productService;
     
+    @Autowired
+    private CatalogExportService catalogExportService;
+    
+    @Value("${product.internal.batch-max-size:500}")
+    private int batchMaxSize;
+    
     /**
      * GET / - Récupère tous les produits qu'on a en base
+     * Avec ?cursor= et/ou ?size= on passe en pagination par curseur (recommandé pour les gros catalogues)
+     * Avec ?fields=name,price on ne renvoie que ces champs (+ l'id), valable sur tous les endpoints de liste
+     * Renvoie un ETag : avec If-None-Match, on répond 304 sans toucher à MongoDB si rien n'a changé
      */
     @GetMapping
-    public ResponseEntity<List<Product>> getAllProducts() {
+    public ResponseEntity<?> getAllProducts(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String fields,
+            WebRequest webRequest) {
+        if (webRequest.checkNotModified(productService.getCatalogETag())) {
+            return null; // 304 déjà préparé par Spring
+        }
+        if (isPaged(cursor, size)) {
+            logger.info("Demande d'une page de produits (curseur: {}, taille: {})", cursor, size);
+            return pageResponse(fields, selected -> productService.getAllProductsPage(cursor, size, selected));
+        }
         logger.info("Demande de récupération de tous les produits");
-        List<Product> products = productService.getAllProducts();
-        return ResponseEntity.ok(products);
+        return listResponse(fields, selected -> productService.getAllProducts(selected));
+    }
+    
+    /**
+     * GET /export - Export de tout le catalogue en NDJSON (un produit par ligne), en streaming
+     * Compressé en gzip si le client envoie Accept-Encoding: gzip
+     */
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportCatalog(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+        logger.info("Demande d'export NDJSON du catalogue (gzip: {})", gzip);
+        
+        StreamingResponseBody body = out -> catalogExportService.exportCatalog(out, gzip);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
     }
     
     /**
@@ -102,64 +156,137 @@ public class ProductController {
      * GET /search?name={name} - Recherche des produits par nom ou mot-clé
      */
     @GetMapping("/search")
-    public ResponseEntity<List<Product>> searchProducts(
+    public ResponseEntity<?> searchProducts(
             @RequestParam(required = false) String name,
-            @RequestParam(required = false) String keyword) {
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) String fields) {
         
         if (name != null && !name.trim().isEmpty()) {
             logger.info("Recherche de produits par nom: {}", name);
-            List<Product> products = productService.searchProductsByName(name);
-            return ResponseEntity.ok(products);
+            return listResponse(fields, selected -> productService.searchProductsByName(name, selected));
         } else if (keyword != null && !keyword.trim().isEmpty()) {
             logger.info("Recherche full-text avec le mot-clé: {}", keyword);
-            List<Product> products = productService.searchProducts(keyword);
-            return ResponseEntity.ok(products);
+            return listResponse(fields, selected -> productService.searchProducts(keyword, selected));
         } else {
             return ResponseEntity.badRequest().build();
         }
     }
     
     /**
-     * GET /category/{category} - Tous les produits d'une catégorie donnée
+     * GET /search/suggest?prefix={prefix} - Autocomplétion sur les noms (appelable à chaque frappe)
+     */
+    @GetMapping("/search/suggest")
+    public ResponseEntity<?> suggestProducts(
+            @RequestParam String prefix,
+            @RequestParam(defaultValue = "10") int limit) {
+        logger.debug("Autocomplétion pour le préfixe: {}", prefix);
+        try {
+            return ResponseEntity.ok(productService.suggestProducts(prefix, limit));
+        } catch (IllegalStateException e) {
+            logger.warn("Autocomplétion indisponible: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    /**
+     * GET /search/facets - Recherche à facettes pour la sidebar du storefront
+     * Filtres combinables : keyword, category (répétable), minPrice, maxPrice, inStock
+     * Remplace les appels séparés à /category, /price-range et /available
+     */
+    @GetMapping("/search/facets")
+    public ResponseEntity<?> facetedSearch(
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) Set<String> category,
+            @RequestParam(required = false) BigDecimal minPrice,
+            @RequestParam(required = false) BigDecimal maxPrice,
+            @RequestParam(required = false) Boolean inStock,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) Integer size) {
+        FacetQuery query = new FacetQuery(keyword, category, minPrice, maxPrice, inStock);
+        logger.info("Recherche à facettes: {}", query);
+        try {
+            FacetedSearchDto result = productService.facetedSearch(query, page, size);
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Paramètres de recherche à facettes invalides: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            logger.warn("Recherche à facettes indisponible: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    /**
+     * GET /category/{category} - Tous les produits d'une catégorie donnée (ETag par catégorie)
      */
     @GetMapping("/category/{category}")
-    public ResponseEntity<List<Product>> getProductsByCategory(@PathVariable String category) {
+    public ResponseEntity<?> getProductsByCategory(
+            @PathVariable String category,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String fields,
+            WebRequest webRequest) {
+        if (webRequest.checkNotModified(productService.getCategoryETag(category))) {
+            return null;
+        }
+        if (isPaged(cursor, size)) {
+            logger.info("Récupération d'une page de la catégorie: {}", category);
+            return pageResponse(fields, selected -> productService.getProductsByCategoryPage(category, cursor, size, selected));
+        }
         logger.info("Récupération des produits de la catégorie: {}", category);
-        List<Product> products = productService.getProductsByCategory(category);
-        return ResponseEntity.ok(products);
+        return listResponse(fields, selected -> productService.getProductsByCategory(category, selected));
     }
     
     /**
      * GET /price-range?min={min}&max={max} - Produits dans une fourchette de prix (pratique nan ?)
+     * Options : sort=asc|desc (par prix) et limit=N pour avoir par exemple les 10 moins chers
      */
     @GetMapping("/price-range")
-    public ResponseEntity<List<Product>> getProductsByPriceRange(
+    public ResponseEntity<?> getProductsByPriceRange(
             @RequestParam BigDecimal min,
-            @RequestParam BigDecimal max) {
+            @RequestParam BigDecimal max,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String fields) {
+        if (isPaged(cursor, size)) {
+            logger.info("Recherche d'une page de produits entre {} et {} euros", min, max);
+            return pageResponse(fields, selected -> productService.getProductsByPriceRangePage(min, max, cursor, size, selected));
+        }
         logger.info("Recherche de produits entre {} et {} euros", min, max);
-        List<Product> products = productService.getProductsByPriceRange(min, max);
-        return ResponseEntity.ok(products);
+        return listResponse(fields, selected -> productService.getProductsByPriceRange(min, max, sort, limit, selected));
     }
     
     /**
-     * GET /available - Seulement les produits qu'on a encore en stock
+     * GET /available - Seulement les produits qu'on a encore en stock (ETag du catalogue)
      */
     @GetMapping("/available")
-    public ResponseEntity<List<Product>> getAvailableProducts() {
+    public ResponseEntity<?> getAvailableProducts(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String fields,
+            WebRequest webRequest) {
+        if (webRequest.checkNotModified(productService.getCatalogETag())) {
+            return null;
+        }
+        if (isPaged(cursor, size)) {
+            logger.info("Récupération d'une page de produits disponibles");
+            return pageResponse(fields, selected -> productService.getAvailableProductsPage(cursor, size, selected));
+        }
         logger.info("Récupération des produits disponibles");
-        List<Product> products = productService.getAvailableProducts();
-        return ResponseEntity.ok(products);
+        return listResponse(fields, selected -> productService.getAvailableProducts(selected));
     }
     
     /**
      * GET /low-stock?threshold={threshold} - Produits qui commencent à manquer
      */
     @GetMapping("/low-stock")
-    public ResponseEntity<List<Product>> getLowStockProducts(
-            @RequestParam(defaultValue = "5") Integer threshold) {
+    public ResponseEntity<?> getLowStockProducts(
+            @RequestParam(defaultValue = "5") Integer threshold,
+            @RequestParam(required = false) String fields) {
         logger.info("Récupération des produits avec stock faible (seuil: {})", threshold);
-        List<Product> products = productService.getLowStockProducts(threshold);
-        return ResponseEntity.ok(products);
+        return listResponse(fields, selected -> productService.getLowStockProducts(threshold, selected));
     }
     
     /**
@@ -182,6 +309,33 @@ public class ProductController {
         }
     }
     
+    /**
+     * PATCH /{id}/stock/adjust - Ajoute ou retire du stock de façon atomique, ex: {"delta": -3}
+     * Par défaut un retrait est refusé (409) s'il n'y a pas assez de stock
+     */
+    @PatchMapping("/{id}/stock/adjust")
+    public ResponseEntity<?> adjustStock(
+            @PathVariable String id,
+            @RequestBody Map<String, Integer> stockAdjustment,
+            @RequestParam(defaultValue = "true") boolean requireSufficientStock) {
+        logger.info("Ajustement du stock pour le produit ID: {}", id);
+        Integer delta = stockAdjustment.get("delta");
+        if (delta == null || delta == 0) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Delta de stock invalide"));
+        }
+        
+        try {
+            Product updatedProduct = productService.adjustStock(id, delta, requireSufficientStock);
+            return ResponseEntity.ok(updatedProduct);
+        } catch (InsufficientStockException e) {
+            logger.warn("Ajustement de stock refusé: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            logger.warn("Erreur lors de l'ajustement du stock: {}", e.getMessage());
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
     /**
      * GET /internal/{id} - Endpoint interne pour les autres services
      * Retourne juste les infos essentielles (optimisé pour les appels entre microservices)
@@ -198,12 +352,83 @@ public class ProductController {
         }
     }
     
+    /**
+     * POST /internal/batch - Lookup en lot pour les autres services
+     * Une seule requête au lieu d'un GET /internal/{id} par ligne de commande
+     */
+    @PostMapping("/internal/batch")
+    public ResponseEntity<?> getProductInfoBatchForService(@RequestBody List<String> ids) {
+        logger.info("Demande d'infos produit en lot pour service - {} IDs", ids != null ? ids.size() : 0);
+        if (ids == null || ids.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "La liste d'IDs est vide"));
+        }
+        if (ids.size() > batchMaxSize) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Trop d'IDs demandés (max " + batchMaxSize + ")"));
+        }
+        
+        ProductBatchInfoDto batch = productService.getProductInfoBatch(ids);
+        if (!batch.getNotFound().isEmpty()) {
+            logger.warn("Produits non trouvés pour service: {}", batch.getNotFound());
+        }
+        return ResponseEntity.ok(batch);
+    }
+    
+    /**
+     * On ne pagine que si le client le demande, pour ne pas casser les appelants existants
+     */
+    private boolean isPaged(String cursor, Integer size) {
+        return cursor != null || size != null;
+    }
+    
+    /**
+     * Exécute une requête de liste avec les champs demandés (null = produits complets)
+     * et transforme un paramètre invalide en 400
+     */
+    private ResponseEntity<?> listResponse(String fields, Function<Set<String>, List<Product>> query) {
+        try {
+            Set<String> selected = ProductFields.parse(fields);
+            List<Product> products = query.apply(selected);
+            return selected == null
+                    ? ResponseEntity.ok(products)
+                    : ResponseEntity.ok(ProductFields.select(products, selected));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Paramètres de requête invalides: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    /**
+     * Pareil que listResponse pour une page (curseur/taille invalide => 400)
+     */
+    private ResponseEntity<?> pageResponse(String fields, Function<Set<String>, CursorPageDto<Product>> query) {
+        try {
+            Set<String> selected = ProductFields.parse(fields);
+            CursorPageDto<Product> page = query.apply(selected);
+            return selected == null
+                    ? ResponseEntity.ok(page)
+                    : ResponseEntity.ok(new CursorPageDto<>(ProductFields.select(page.getItems(), selected), page.getNextCursor()));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Paramètres de pagination invalides: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    /**
+     * GET /stats - Statistiques du catalogue (par catégorie, stock, valeur de l'inventaire)
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<CatalogStatsDto> getCatalogStats() {
+        logger.info("Demande des statistiques du catalogue");
+        return ResponseEntity.ok(productService.getCatalogStats());
+    }
+    
     /**
      * GET /health - Endpoint de santé du service
      */
     @GetMapping("/health")
     public ResponseEntity<Map<String, Object>> health() {
-        long productCount = productService.getAllProducts().size();
+        // Compteur tenu à jour en mémoire : le health check ne touche plus à MongoDB
+        long productCount = productService.getProductCount();
         return ResponseEntity.ok(Map.of(
                 "status", "UP",
                 "service", "product-service",
@@ -0,0 +1,97 @@
+package com.microcommerce.productservice.controller;
+
+import com.microcommerce.productservice.service.PublicCatalog;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Catalogue public pour la vitrine : lecture seule, sans authentification
+ * 
+ * Tout est servi depuis le snapshot en mémoire de PublicCatalog (jamais MongoDB), avec des
+ * corps déjà sérialisés et déjà compressés. Ces routes sont exclues de la chaîne de sécurité
+ * (voir SecurityConfig), donc pas de parsing JWT non plus.
+ */
+@RestController
+@RequestMapping("/public")
+@CrossOrigin(origins = "*", methods = RequestMethod.GET)
+public class PublicCatalogController {
+    
+    @Autowired
+    private PublicCatalog publicCatalog;
+    
+    @Value("${product.public-catalog.max-age:60}")
+    private long maxAgeSeconds;
+    
+    /**
+     * GET /public/products - Tout le catalogue public
+     */
+    @GetMapping("/products")
+    public ResponseEntity<?> getProducts(WebRequest webRequest) {
+        return respond(publicCatalog.all(), webRequest);
+    }
+    
+    /**
+     * GET /public/products/{id} - Un produit du catalogue public
+     */
+    @GetMapping("/products/{id}")
+    public ResponseEntity<?> getProduct(@PathVariable String id, WebRequest webRequest) {
+        if (!publicCatalog.isReady()) {
+            return notReady();
+        }
+        PublicCatalog.Body body = publicCatalog.product(id);
+        if (body == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return respond(body, webRequest);
+    }
+    
+    /**
+     * GET /public/categories/{category}/products - Les produits d'une catégorie
+     */
+    @GetMapping("/categories/{category}/products")
+    public ResponseEntity<?> getProductsByCategory(@PathVariable String category, WebRequest webRequest) {
+        return respond(publicCatalog.category(category), webRequest);
+    }
+    
+    /**
+     * Renvoie le corps pré-calculé, en gzip si le client l'accepte, ou 304 si l'ETag n'a pas changé
+     */
+    private ResponseEntity<?> respond(PublicCatalog.Body body, WebRequest webRequest) {
+        if (body == null) {
+            return notReady();
+        }
+        
+        // Pas de version gzip quand elle ne serait pas plus petite : servi tel quel
+        String acceptEncoding = webRequest.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        boolean gzip = body.gzip() != null && acceptEncoding != null && acceptEncoding.contains("gzip");
+        String etag = gzip ? body.gzipEtag() : body.etag();
+        if (webRequest.checkNotModified(etag)) {
+            return null; // 304 déjà préparé par Spring
+        }
+        
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(CacheControl.maxAge(Duration.ofSeconds(maxAgeSeconds)).cachePublic())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .eTag(etag);
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(body.gzip());
+        }
+        return response.body(body.json());
+    }
+    
+    private ResponseEntity<?> notReady() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(Map.of("error", "Le catalogue public n'est pas encore prêt"));
+    }
+}
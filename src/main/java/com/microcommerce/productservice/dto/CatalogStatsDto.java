@@ -0,0 +1,97 @@
+package com.microcommerce.productservice.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Statistiques du catalogue (nombre de produits, stock, valeur de l'inventaire)
+ * 
+ * Calculées au fil de l'eau par CatalogStatistics, donc pas besoin de scanner la base
+ */
+public class CatalogStatsDto {
+    
+    private long totalProducts;
+    private long inStockProducts;
+    private BigDecimal inventoryValue;
+    private Map<String, CategoryStats> categories;
+    private LocalDateTime lastReconciledAt;
+    
+    // Constructeurs
+    public CatalogStatsDto() {}
+    
+    public CatalogStatsDto(long totalProducts, long inStockProducts, BigDecimal inventoryValue,
+                           Map<String, CategoryStats> categories, LocalDateTime lastReconciledAt) {
+        this.totalProducts = totalProducts;
+        this.inStockProducts = inStockProducts;
+        this.inventoryValue = inventoryValue;
+        this.categories = categories;
+        this.lastReconciledAt = lastReconciledAt;
+    }
+    
+    /**
+     * Stats d'une catégorie
+     */
+    public static class CategoryStats {
+        private long count;
+        private long inStock;
+        private BigDecimal inventoryValue;
+        
+        public CategoryStats() {}
+        
+        public CategoryStats(long count, long inStock, BigDecimal inventoryValue) {
+            this.count = count;
+            this.inStock = inStock;
+            this.inventoryValue = inventoryValue;
+        }
+        
+        // Getters et Setters
+        public long getCount() { return count; }
+        public void setCount(long count) { this.count = count; }
+        public long getInStock() { return inStock; }
+        public void setInStock(long inStock) { this.inStock = inStock; }
+        public BigDecimal getInventoryValue() { return inventoryValue; }
+        public void setInventoryValue(BigDecimal inventoryValue) { this.inventoryValue = inventoryValue; }
+    }
+    
+    // Getters et Setters
+    public long getTotalProducts() {
+        return totalProducts;
+    }
+    
+    public void setTotalProducts(long totalProducts) {
+        this.totalProducts = totalProducts;
+    }
+    
+    public long getInStockProducts() {
+        return inStockProducts;
+    }
+    
+    public void setInStockProducts(long inStockProducts) {
+        this.inStockProducts = inStockProducts;
+    }
+    
+    public BigDecimal getInventoryValue() {
+        return inventoryValue;
+    }
+    
+    public void setInventoryValue(BigDecimal inventoryValue) {
+        this.inventoryValue = inventoryValue;
+    }
+    
+    public Map<String, CategoryStats> getCategories() {
+        return categories;
+    }
+    
+    public void setCategories(Map<String, CategoryStats> categories) {
+        this.categories = categories;
+    }
+    
+    public LocalDateTime getLastReconciledAt() {
+        return lastReconciledAt;
+    }
+    
+    public void setLastReconciledAt(LocalDateTime lastReconciledAt) {
+        this.lastReconciledAt = lastReconciledAt;
+    }
+}
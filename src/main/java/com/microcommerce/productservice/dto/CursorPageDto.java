@@ -0,0 +1,54 @@
+package com.microcommerce.productservice.dto;
+
+import java.util.List;
+
+/**
+ * Une page de résultats avec pagination par curseur
+ * 
+ * nextCursor est opaque pour le client : il suffit de le renvoyer tel quel
+ * dans ?cursor= pour avoir la page suivante (null quand on est à la fin)
+ */
+public class CursorPageDto<T> {
+    
+    private List<T> items;
+    private String nextCursor;
+    private int size;
+    
+    // Constructeurs
+    public CursorPageDto() {}
+    
+    public CursorPageDto(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.size = items.size();
+    }
+    
+    // Getters et Setters
+    public List<T> getItems() {
+        return items;
+    }
+    
+    public void setItems(List<T> items) {
+        this.items = items;
+    }
+    
+    public String getNextCursor() {
+        return nextCursor;
+    }
+    
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+    
+    public int getSize() {
+        return size;
+    }
+    
+    public void setSize(int size) {
+        this.size = size;
+    }
+    
+    public boolean isHasMore() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,128 @@
+package com.microcommerce.productservice.dto;
+
+import com.microcommerce.productservice.entity.Product;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Réponse de la recherche à facettes : une page de résultats + tout ce qu'il faut
+ * pour construire la sidebar de filtres (catégories, histogramme des prix, disponibilité)
+ */
+public class FacetedSearchDto {
+    
+    private List<Product> items;
+    private long total;
+    private int page;
+    private int size;
+    private Map<String, Long> categories;
+    private List<PriceBucket> priceHistogram;
+    private long inStock;
+    private long outOfStock;
+    
+    // Constructeurs
+    public FacetedSearchDto() {}
+    
+    public FacetedSearchDto(List<Product> items, long total, int page, int size, Map<String, Long> categories,
+                            List<PriceBucket> priceHistogram, long inStock, long outOfStock) {
+        this.items = items;
+        this.total = total;
+        this.page = page;
+        this.size = size;
+        this.categories = categories;
+        this.priceHistogram = priceHistogram;
+        this.inStock = inStock;
+        this.outOfStock = outOfStock;
+    }
+    
+    /**
+     * Une tranche de l'histogramme des prix : min inclus, max exclu (null = pas de borne)
+     */
+    public static class PriceBucket {
+        private BigDecimal min;
+        private BigDecimal max;
+        private long count;
+        
+        public PriceBucket() {}
+        
+        public PriceBucket(BigDecimal min, BigDecimal max, long count) {
+            this.min = min;
+            this.max = max;
+            this.count = count;
+        }
+        
+        // Getters et Setters
+        public BigDecimal getMin() { return min; }
+        public void setMin(BigDecimal min) { this.min = min; }
+        public BigDecimal getMax() { return max; }
+        public void setMax(BigDecimal max) { this.max = max; }
+        public long getCount() { return count; }
+        public void setCount(long count) { this.count = count; }
+    }
+    
+    // Getters et Setters
+    public List<Product> getItems() {
+        return items;
+    }
+    
+    public void setItems(List<Product> items) {
+        this.items = items;
+    }
+    
+    public long getTotal() {
+        return total;
+    }
+    
+    public void setTotal(long total) {
+        this.total = total;
+    }
+    
+    public int getPage() {
+        return page;
+    }
+    
+    public void setPage(int page) {
+        this.page = page;
+    }
+    
+    public int getSize() {
+        return size;
+    }
+    
+    public void setSize(int size) {
+        this.size = size;
+    }
+    
+    public Map<String, Long> getCategories() {
+        return categories;
+    }
+    
+    public void setCategories(Map<String, Long> categories) {
+        this.categories = categories;
+    }
+    
+    public List<PriceBucket> getPriceHistogram() {
+        return priceHistogram;
+    }
+    
+    public void setPriceHistogram(List<PriceBucket> priceHistogram) {
+        this.priceHistogram = priceHistogram;
+    }
+    
+    public long getInStock() {
+        return inStock;
+    }
+    
+    public void setInStock(long inStock) {
+        this.inStock = inStock;
+    }
+    
+    public long getOutOfStock() {
+        return outOfStock;
+    }
+    
+    public void setOutOfStock(long outOfStock) {
+        this.outOfStock = outOfStock;
+    }
+}
@@ -0,0 +1,51 @@
+package com.microcommerce.productservice.dto;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Réponse du lookup en lot pour les autres services
+ *
+ * Les produits trouvés sont indexés par ID, et les IDs inconnus sont listés
+ * explicitement dans notFound (pour que order-service n'ait pas à deviner)
+ */
+public class ProductBatchInfoDto {
+
+    private Map<String, ProductInfoDto> products = new LinkedHashMap<>();
+    private List<String> notFound = new ArrayList<>();
+
+    // Constructeurs
+    public ProductBatchInfoDto() {}
+
+    public ProductBatchInfoDto(Map<String, ProductInfoDto> products, List<String> notFound) {
+        this.products = products;
+        this.notFound = notFound;
+    }
+
+    // Getters et Setters
+    public Map<String, ProductInfoDto> getProducts() {
+        return products;
+    }
+
+    public void setProducts(Map<String, ProductInfoDto> products) {
+        this.products = products;
+    }
+
+    public List<String> getNotFound() {
+        return notFound;
+    }
+
+    public void setNotFound(List<String> notFound) {
+        this.notFound = notFound;
+    }
+
+    @Override
+    public String toString() {
+        return "ProductBatchInfoDto{" +
+                "products=" + products.size() +
+                ", notFound=" + notFound +
+                '}';
+    }
+}
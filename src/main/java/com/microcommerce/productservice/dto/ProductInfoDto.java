@@ -16,6 +16,7 @@ public class ProductInfoDto {
     private String category;
     private Integer stock;
     private boolean available;
+    private Long version;
     
     // Constructeurs
     public ProductInfoDto() {}
@@ -79,6 +80,14 @@ public class ProductInfoDto {
         this.available = available;
     }
     
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+    
     @Override
     public String toString() {
         return "ProductInfoDto{" +
@@ -88,6 +97,7 @@ public class ProductInfoDto {
                 ", category='" + category + '\'' +
                 ", stock=" + stock +
                 ", available=" + available +
+                ", version=" + version +
                 '}';
     }
 }
\ No newline at end of file
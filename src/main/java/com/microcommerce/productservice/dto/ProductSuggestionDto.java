@@ -0,0 +1,54 @@
+package com.microcommerce.productservice.dto;
+
+/**
+ * Une suggestion d'autocomplétion (juste de quoi afficher la liste déroulante)
+ */
+public class ProductSuggestionDto {
+    
+    private String id;
+    private String name;
+    private boolean available;
+    
+    // Constructeurs
+    public ProductSuggestionDto() {}
+    
+    public ProductSuggestionDto(String id, String name, boolean available) {
+        this.id = id;
+        this.name = name;
+        this.available = available;
+    }
+    
+    // Getters et Setters
+    public String getId() {
+        return id;
+    }
+    
+    public void setId(String id) {
+        this.id = id;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public void setName(String name) {
+        this.name = name;
+    }
+    
+    public boolean isAvailable() {
+        return available;
+    }
+    
+    public void setAvailable(boolean available) {
+        this.available = available;
+    }
+    
+    @Override
+    public String toString() {
+        return "ProductSuggestionDto{" +
+                "id='" + id + '\'' +
+                ", name='" + name + '\'' +
+                ", available=" + available +
+                '}';
+    }
+}
@@ -0,0 +1,90 @@
+package com.microcommerce.productservice.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Produit tel qu'exposé sur le catalogue public (vitrine, sans authentification)
+ * 
+ * Pas de stock exact (info interne), juste la disponibilité
+ */
+public class PublicProductDto {
+    
+    private String id;
+    private String name;
+    private String description;
+    private BigDecimal price;
+    private String category;
+    private boolean available;
+    
+    // Constructeurs
+    public PublicProductDto() {}
+    
+    public PublicProductDto(String id, String name, String description, BigDecimal price,
+                            String category, boolean available) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.price = price;
+        this.category = category;
+        this.available = available;
+    }
+    
+    // Getters et Setters
+    public String getId() {
+        return id;
+    }
+    
+    public void setId(String id) {
+        this.id = id;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public void setName(String name) {
+        this.name = name;
+    }
+    
+    public String getDescription() {
+        return description;
+    }
+    
+    public void setDescription(String description) {
+        this.description = description;
+    }
+    
+    public BigDecimal getPrice() {
+        return price;
+    }
+    
+    public void setPrice(BigDecimal price) {
+        this.price = price;
+    }
+    
+    public String getCategory() {
+        return category;
+    }
+    
+    public void setCategory(String category) {
+        this.category = category;
+    }
+    
+    public boolean isAvailable() {
+        return available;
+    }
+    
+    public void setAvailable(boolean available) {
+        this.available = available;
+    }
+    
+    @Override
+    public String toString() {
+        return "PublicProductDto{" +
+                "id='" + id + '\'' +
+                ", name='" + name + '\'' +
+                ", price=" + price +
+                ", available=" + available +
+                '}';
+    }
+}
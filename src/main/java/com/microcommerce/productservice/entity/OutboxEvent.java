@@ -0,0 +1,128 @@
+package com.microcommerce.productservice.entity;
+
+import com.microcommerce.productservice.event.ProductEvent;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Un événement en attente d'envoi vers RabbitMQ (pattern "transactional outbox")
+ * 
+ * Écrit dans la même transaction MongoDB que le produit, puis envoyé en tâche de fond
+ * par OutboxRelay et supprimé une fois confirmé par le broker. L'ordre d'envoi suit l'_id,
+ * et par produit la version du produit (voir OutboxRelay).
+ * parked = mis de côté après trop d'échecs, plus renvoyé automatiquement.
+ * snapshot = état complet republié à la demande d'un consommateur (pas une écriture du produit).
+ */
+@Document(collection = "product_outbox")
+public class OutboxEvent {
+    
+    @Id
+    private String id;
+    
+    private String exchange;
+    private String routingKey;
+    private ProductEvent event;
+    private LocalDateTime createdAt;
+    private int attempts;
+    private String lastError;
+    private boolean parked;
+    private boolean snapshot;
+    
+    // Constructeurs
+    public OutboxEvent() {
+        // Pour MongoDB
+    }
+    
+    public OutboxEvent(String exchange, String routingKey, ProductEvent event) {
+        this.exchange = exchange;
+        this.routingKey = routingKey;
+        this.event = event;
+        this.createdAt = LocalDateTime.now();
+    }
+    
+    // Getters et Setters
+    public String getId() {
+        return id;
+    }
+    
+    public void setId(String id) {
+        this.id = id;
+    }
+    
+    public String getExchange() {
+        return exchange;
+    }
+    
+    public void setExchange(String exchange) {
+        this.exchange = exchange;
+    }
+    
+    public String getRoutingKey() {
+        return routingKey;
+    }
+    
+    public void setRoutingKey(String routingKey) {
+        this.routingKey = routingKey;
+    }
+    
+    public ProductEvent getEvent() {
+        return event;
+    }
+    
+    public void setEvent(ProductEvent event) {
+        this.event = event;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    public int getAttempts() {
+        return attempts;
+    }
+    
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+    
+    public String getLastError() {
+        return lastError;
+    }
+    
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+    
+    public boolean isParked() {
+        return parked;
+    }
+    
+    public void setParked(boolean parked) {
+        this.parked = parked;
+    }
+    
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+    
+    public void setSnapshot(boolean snapshot) {
+        this.snapshot = snapshot;
+    }
+    
+    @Override
+    public String toString() {
+        return "OutboxEvent{" +
+                "id='" + id + '\'' +
+                ", routingKey='" + routingKey + '\'' +
+                ", event=" + event +
+                ", attempts=" + attempts +
+                ", parked=" + parked +
+                '}';
+    }
+}
@@ -35,6 +35,9 @@ public class Product {
     @Indexed
     private String category;
     
+    // Version du produit, incrémentée côté serveur à chaque écriture (null = document antérieur au versioning)
+    private Long version;
+    
     // Constructeurs - parce que Spring en a besoin
     public Product() {
         // Constructeur vide pour que JPA/MongoDB soit content
@@ -99,6 +102,14 @@ public class Product {
         this.category = category;
     }
     
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+    
 
     
     @Override
@@ -109,6 +120,7 @@ public class Product {
                 ", price=" + price +
                 ", stock=" + stock +
                 ", category='" + category + '\'' +
+                ", version=" + version +
                 '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,96 @@
+package com.microcommerce.productservice.event;
+
+import com.microcommerce.productservice.config.RabbitMQConfig;
+import com.microcommerce.productservice.repository.StockAdjustment;
+import com.microcommerce.productservice.service.ProductService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Consommateur des événements commandes en mode batch (product.order-events.batch.enabled=true)
+ * 
+ * Au lieu d'une écriture MongoDB par ligne de commande, on cumule les deltas de stock
+ * par commande et par produit sur tout le lot, et on applique le tout en un seul bulkWrite.
+ * Chaque delta porte la clé de sa commande ("orderId:eventType") et n'est appliqué qu'une fois :
+ * en cas d'erreur le lot est rejoué (quelques fois) sans jamais compter un stock en double,
+ * puis part dans la DLQ (RabbitMQConfig.PRODUCT_SERVICE_ORDER_DLQ) au lieu de tourner en boucle.
+ */
+@Component
+@ConditionalOnProperty(name = "product.order-events.batch.enabled", havingValue = "true")
+public class OrderEventBatchListener {
+    
+    private static final Logger logger = LoggerFactory.getLogger(OrderEventBatchListener.class);
+    
+    @Autowired
+    private ProductService productService;
+    
+    @RabbitListener(queues = RabbitMQConfig.PRODUCT_SERVICE_ORDER_QUEUE,
+                    containerFactory = RabbitMQConfig.ORDER_BATCH_CONTAINER_FACTORY)
+    public void handleOrderEvents(List<OrderEvent> orderEvents) {
+        logger.info("Lot de {} événements commande reçu dans product-service", orderEvents.size());
+        
+        List<StockAdjustment> adjustments = new ArrayList<>();
+        for (OrderEvent orderEvent : orderEvents) {
+            int direction = stockDirection(orderEvent);
+            if (direction == 0 || orderEvent.getOrderItems() == null) {
+                continue;
+            }
+            // Plusieurs lignes du même produit dans une commande = un seul delta
+            Map<String, Integer> deltas = new LinkedHashMap<>();
+            for (OrderEvent.OrderItemEvent item : orderEvent.getOrderItems()) {
+                if (item.getProductId() != null && item.getQuantity() != null) {
+                    deltas.merge(item.getProductId(), direction * item.getQuantity(), Integer::sum);
+                }
+            }
+            String key = stockChangeKey(orderEvent);
+            deltas.forEach((productId, delta) -> {
+                if (delta != 0) {
+                    adjustments.add(new StockAdjustment(productId, delta, key));
+                }
+            });
+        }
+        
+        if (adjustments.isEmpty()) {
+            return;
+        }
+        // Pas de try/catch : une exception fait rejouer le lot, sans risque grâce aux clés
+        productService.adjustStockBatch(adjustments);
+        logger.info("Stocks mis à jour: {} deltas à partir de {} événements", adjustments.size(), orderEvents.size());
+    }
+    
+    /**
+     * Clé qui identifie le changement de stock d'un événement, null si la commande n'a pas d'ID
+     * (dans ce cas pas de protection contre le rejeu)
+     */
+    private String stockChangeKey(OrderEvent orderEvent) {
+        String key = OrderStockChanges.key(orderEvent);
+        if (key == null) {
+            logger.warn("Événement commande sans orderId, delta appliqué sans protection contre le rejeu: {}", orderEvent);
+        }
+        return key;
+    }
+    
+    /**
+     * -1 si l'événement consomme du stock, +1 s'il en rend, 0 s'il n'y touche pas
+     */
+    private int stockDirection(OrderEvent orderEvent) {
+        if (orderEvent.getEventType() == null) {
+            logger.warn("Événement commande sans type ignoré: {}", orderEvent);
+        } else if ("ORDER_STATUS_UPDATED".equals(orderEvent.getEventType())) {
+            logger.info("Statut de commande mis à jour - ID: {}, Statut: {}",
+                       orderEvent.getOrderId(), orderEvent.getStatus());
+        } else if (!OrderStockChanges.isKnownType(orderEvent.getEventType())) {
+            logger.warn("Type d'événement commande non géré: {}", orderEvent.getEventType());
+        }
+        return OrderStockChanges.direction(orderEvent);
+    }
+}
@@ -1,22 +1,27 @@
 package com.microcommerce.productservice.event;
 
 import com.microcommerce.productservice.entity.Product;
-import com.microcommerce.productservice.repository.ProductRepository;
+import com.microcommerce.productservice.service.ProductNotFoundException;
+import com.microcommerce.productservice.service.ProductService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.stereotype.Component;
 
-import java.util.Optional;
-
+/**
+ * Consommateur des événements commandes, un message à la fois (mode par défaut)
+ * Voir OrderEventBatchListener pour le mode batch et OrderEventPartitionedListener pour le mode parallèle
+ */
 @Component
+@ConditionalOnExpression("!${product.order-events.batch.enabled:false} and !${product.order-events.partitioned.enabled:false}")
 public class OrderEventListener {
     
     private static final Logger logger = LoggerFactory.getLogger(OrderEventListener.class);
     
     @Autowired
-    private ProductRepository productRepository;
+    private ProductService productService;
     
     @RabbitListener(queues = "product-service.order.queue")
     public void handleOrderEvent(OrderEvent orderEvent) {
@@ -87,25 +92,21 @@ public class OrderEventListener {
     
     private void updateProductStock(String productId, Integer quantityChange, String reason) {
         try {
-            Optional<Product> productOpt = productRepository.findById(productId);
-            if (productOpt.isPresent()) {
-                Product product = productOpt.get();
-                int newStock = product.getStock() + quantityChange;
-                
-                if (newStock < 0) {
-                    logger.warn("Stock négatif détecté pour le produit {} après {}: nouveau stock = {}", 
-                               productId, reason, newStock);
-                }
-                
-                product.setStock(newStock);
-                productRepository.save(product);
-                
-                logger.info("Stock mis à jour pour le produit {} ({}): {} -> {} ({})", 
-                           productId, product.getName(), 
-                           product.getStock() - quantityChange, newStock, reason);
-            } else {
-                logger.warn("Produit non trouvé pour la mise à jour de stock: ID = {}", productId);
+            // $inc atomique côté MongoDB : deux événements simultanés sur le même produit ne s'écrasent plus.
+            // Pas de garde ici, la commande est déjà passée côté order-service : on signale juste le stock négatif
+            Product product = productService.adjustStock(productId, quantityChange, false);
+            int newStock = product.getStock();
+            
+            if (newStock < 0) {
+                logger.warn("Stock négatif détecté pour le produit {} après {}: nouveau stock = {}", 
+                           productId, reason, newStock);
             }
+            
+            logger.info("Stock mis à jour pour le produit {} ({}): {} -> {} ({})", 
+                       productId, product.getName(), 
+                       newStock - quantityChange, newStock, reason);
+        } catch (ProductNotFoundException e) {
+            logger.warn("Produit non trouvé pour la mise à jour de stock: ID = {}", productId);
         } catch (Exception e) {
             logger.error("Erreur lors de la mise à jour du stock pour le produit {}: {}", 
                         productId, e.getMessage(), e);
@@ -0,0 +1,265 @@
+package com.microcommerce.productservice.event;
+
+import com.microcommerce.productservice.config.RabbitMQConfig;
+import com.microcommerce.productservice.repository.StockAdjustment;
+import com.microcommerce.productservice.service.ProductService;
+import com.rabbitmq.client.Channel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Consommateur des événements commandes en parallèle (product.order-events.partitioned.enabled=true)
+ * 
+ * Un seul consommateur RabbitMQ lit la queue dans l'ordre, puis chaque ligne de commande est
+ * confiée à un "shard" choisi par hash du productId. Chaque shard est un thread unique avec
+ * sa file d'attente : les mises à jour d'un même produit passent toujours par le même thread,
+ * dans l'ordre d'arrivée, pendant que les autres produits avancent en parallèle.
+ * 
+ * Le message n'est acquitté qu'une fois toutes ses lignes traitées (ack manuel) : en cas de
+ * crash, ce qui était en cours est relivré. Le nombre de messages en vol est borné par le prefetch.
+ * Comme en mode batch, chaque delta (cumulé par produit dans la commande) porte la clé
+ * "orderId:eventType" et n'est appliqué qu'une fois : une relivraison ne compte pas le stock en double.
+ * Une ligne en erreur est retentée (partitioned.max-attempts fois) ; si elle échoue encore, le message
+ * part dans la DLQ (RabbitMQConfig.PRODUCT_SERVICE_ORDER_DLQ) au lieu d'être acquitté et perdu,
+ * et s'il ne peut même pas y être publié il est rendu à la queue (nack).
+ * Le mode batch reste prioritaire s'il est activé aussi.
+ */
+@Component
+@ConditionalOnExpression("${product.order-events.partitioned.enabled:false} and !${product.order-events.batch.enabled:false}")
+public class OrderEventPartitionedListener {
+    
+    private static final Logger logger = LoggerFactory.getLogger(OrderEventPartitionedListener.class);
+    
+    @Autowired
+    private ProductService productService;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+    
+    @Value("${product.order-events.partitioned.workers:4}")
+    private int workers;
+    
+    @Value("${product.order-events.partitioned.max-attempts:3}")
+    private int maxAttempts;
+    
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+    
+    private Shard[] shards;
+    private Counter deadLettered;
+    
+    @PostConstruct
+    public void init() {
+        deadLettered = meterRegistry.counter("product.order-events.dead-lettered");
+        shards = new Shard[workers];
+        for (int i = 0; i < workers; i++) {
+            shards[i] = new Shard(i);
+        }
+        logger.info("Consommation des événements commandes répartie sur {} shards", workers);
+    }
+    
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (Shard shard : shards) {
+            shard.executor.shutdown();
+        }
+        for (Shard shard : shards) {
+            if (!shard.executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warn("Shard {} arrêté avec {} lignes encore en attente", shard.index, shard.executor.getQueue().size());
+            }
+        }
+    }
+    
+    @RabbitListener(queues = RabbitMQConfig.PRODUCT_SERVICE_ORDER_QUEUE,
+                    containerFactory = RabbitMQConfig.ORDER_PARTITIONED_CONTAINER_FACTORY)
+    public void handleOrderEvent(OrderEvent orderEvent, Message message, Channel channel,
+                                 @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag) {
+        logger.info("Événement commande reçu dans product-service: {}", orderEvent);
+        
+        // Plusieurs lignes du même produit dans une commande = un seul delta (une seule clé par produit)
+        int direction = stockDirection(orderEvent);
+        Map<String, Integer> deltas = new LinkedHashMap<>();
+        if (direction != 0 && orderEvent.getOrderItems() != null) {
+            for (OrderEvent.OrderItemEvent item : orderEvent.getOrderItems()) {
+                if (item.getProductId() != null && item.getQuantity() != null) {
+                    deltas.merge(item.getProductId(), direction * item.getQuantity(), Integer::sum);
+                }
+            }
+        }
+        deltas.values().removeIf(delta -> delta == 0);
+        if (deltas.isEmpty()) {
+            ack(channel, deliveryTag);
+            return;
+        }
+        String key = OrderStockChanges.key(orderEvent);
+        if (key == null) {
+            logger.warn("Événement commande sans orderId, delta appliqué sans protection contre le rejeu: {}", orderEvent);
+        }
+        
+        // Le dernier shard qui finit une ligne de ce message l'acquitte (ou l'envoie dans la DLQ)
+        AtomicInteger remaining = new AtomicInteger(deltas.size());
+        AtomicBoolean failed = new AtomicBoolean();
+        String reason = "Commande " + orderEvent.getOrderId() + " (" + orderEvent.getEventType() + ")";
+        deltas.forEach((productId, delta) -> {
+            Shard shard = shards[Math.floorMod(productId.hashCode(), shards.length)];
+            long queuedAt = System.nanoTime();
+            shard.executor.execute(() -> {
+                shard.waitTimer.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                try {
+                    if (updateProductStock(new StockAdjustment(productId, delta, key), reason)) {
+                        shard.processed.increment();
+                    } else {
+                        failed.set(true);
+                    }
+                } finally {
+                    if (remaining.decrementAndGet() == 0) {
+                        complete(message, channel, deliveryTag, failed.get(), reason);
+                    }
+                }
+            });
+        });
+    }
+    
+    private int stockDirection(OrderEvent orderEvent) {
+        if ("ORDER_STATUS_UPDATED".equals(orderEvent.getEventType())) {
+            logger.info("Statut de commande mis à jour - ID: {}, Statut: {}",
+                       orderEvent.getOrderId(), orderEvent.getStatus());
+        } else if (!OrderStockChanges.isKnownType(orderEvent.getEventType())) {
+            logger.warn("Type d'événement commande non géré: {}", orderEvent.getEventType());
+        }
+        return OrderStockChanges.direction(orderEvent);
+    }
+    
+    /**
+     * Applique un delta (au plus une fois grâce à sa clé), avec quelques nouvelles tentatives.
+     * Renvoie false si la ligne est toujours en échec (les produits inconnus ne sont pas une erreur)
+     */
+    private boolean updateProductStock(StockAdjustment adjustment, String reason) {
+        long backOffMs = 200;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                // Même chemin que le mode batch : garde sur la clé, produit inconnu ignoré (et loggé)
+                productService.adjustStockBatch(List.of(adjustment));
+                logger.debug("Stock mis à jour pour le produit {}: delta {} ({})",
+                            adjustment.productId(), adjustment.delta(), reason);
+                return true;
+            } catch (Exception e) {
+                if (attempt >= maxAttempts) {
+                    logger.error("Erreur lors de la mise à jour du stock pour le produit {} ({}), abandon après {} essais: {}",
+                                adjustment.productId(), reason, attempt, e.getMessage(), e);
+                    return false;
+                }
+                logger.warn("Erreur lors de la mise à jour du stock pour le produit {} ({}), essai {}/{}: {}",
+                           adjustment.productId(), reason, attempt, maxAttempts, e.getMessage());
+                try {
+                    Thread.sleep(backOffMs);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+                backOffMs = Math.min(backOffMs * 2, 2000);
+            }
+        }
+    }
+    
+    /**
+     * Toutes les lignes du message sont passées : ack, ou DLQ si l'une d'elles a échoué.
+     * Les lignes déjà appliquées ne seront pas recomptées si le message est rejoué depuis la DLQ (clés)
+     */
+    private void complete(Message message, Channel channel, long deliveryTag, boolean failed, String reason) {
+        if (!failed) {
+            ack(channel, deliveryTag);
+            return;
+        }
+        try {
+            rabbitTemplate.send("", RabbitMQConfig.PRODUCT_SERVICE_ORDER_DLQ, message);
+            deadLettered.increment();
+            logger.error("{} envoyé dans {} après échec de mise à jour du stock", reason, RabbitMQConfig.PRODUCT_SERVICE_ORDER_DLQ);
+            ack(channel, deliveryTag);
+        } catch (Exception e) {
+            logger.error("{} : envoi dans la DLQ impossible, message rendu à la queue: {}", reason, e.getMessage());
+            nack(channel, deliveryTag);
+        }
+    }
+    
+    /**
+     * Les acks partent des threads des shards : on les sérialise sur le channel
+     */
+    private void ack(Channel channel, long deliveryTag) {
+        synchronized (channel) {
+            try {
+                channel.basicAck(deliveryTag, false);
+            } catch (IOException | RuntimeException e) {
+                // Channel fermé entre temps : le message sera relivré
+                logger.warn("Impossible d'acquitter le message {}: {}", deliveryTag, e.getMessage());
+            }
+        }
+    }
+    
+    private void nack(Channel channel, long deliveryTag) {
+        synchronized (channel) {
+            try {
+                channel.basicNack(deliveryTag, false, true);
+            } catch (IOException | RuntimeException e) {
+                // Channel fermé entre temps : le message sera relivré de toute façon
+                logger.warn("Impossible de rendre le message {} à la queue: {}", deliveryTag, e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Un thread dédié + ses métriques (lignes traitées, file d'attente, temps d'attente)
+     */
+    private class Shard {
+        
+        private final int index;
+        private final ThreadPoolExecutor executor;
+        private final Counter processed;
+        private final Timer waitTimer;
+        
+        Shard(int index) {
+            this.index = index;
+            // Le thread du shard passe son temps à attendre MongoDB : en virtuel il ne bloque pas de thread système
+            ThreadFactory threadFactory = virtualThreads
+                    ? new VirtualThreadTaskExecutor("order-shard-" + index + "-").getVirtualThreadFactory()
+                    : runnable -> new Thread(runnable, "order-shard-" + index);
+            this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                    threadFactory);
+            List<Tag> tags = List.of(Tag.of("shard", String.valueOf(index)));
+            this.processed = meterRegistry.counter("product.order-events.shard.processed", tags);
+            this.waitTimer = meterRegistry.timer("product.order-events.shard.wait", tags);
+            meterRegistry.gauge("product.order-events.shard.queued", tags, executor, pool -> pool.getQueue().size());
+        }
+    }
+}
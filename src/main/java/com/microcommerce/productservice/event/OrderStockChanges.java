@@ -0,0 +1,47 @@
+package com.microcommerce.productservice.event;
+
+/**
+ * Effet d'un événement commande sur le stock, partagé par les différents modes de consommation
+ */
+final class OrderStockChanges {
+    
+    private OrderStockChanges() {
+    }
+    
+    /**
+     * -1 si l'événement consomme du stock, +1 s'il en rend, 0 s'il n'y touche pas (ou type inconnu)
+     */
+    static int direction(OrderEvent orderEvent) {
+        if (orderEvent.getEventType() == null) {
+            return 0;
+        }
+        switch (orderEvent.getEventType()) {
+            case "ORDER_CREATED":
+                return -1;
+            case "ORDER_CANCELLED":
+            case "ORDER_DELETED":
+                return 1;
+            default:
+                return 0;
+        }
+    }
+    
+    /**
+     * Clé qui identifie le changement de stock d'un événement ("orderId:eventType"), la même
+     * quel que soit le mode de consommation. Null si la commande n'a pas d'ID (pas de protection contre le rejeu)
+     */
+    static String key(OrderEvent orderEvent) {
+        if (orderEvent.getOrderId() == null) {
+            return null;
+        }
+        return orderEvent.getOrderId() + ":" + orderEvent.getEventType();
+    }
+    
+    /**
+     * Types d'événements connus (les autres sont signalés dans les logs)
+     */
+    static boolean isKnownType(String eventType) {
+        return "ORDER_CREATED".equals(eventType) || "ORDER_CANCELLED".equals(eventType)
+                || "ORDER_DELETED".equals(eventType) || "ORDER_STATUS_UPDATED".equals(eventType);
+    }
+}
@@ -1,19 +1,29 @@
 package com.microcommerce.productservice.event;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateTimeDeserializer;
 import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * Événement produit envoyé via RabbitMQ
  * 
  * Contient les infos essentielles d'un produit pour que les autres services
  * puissent se synchroniser sans avoir besoin de faire des appels HTTP.
+ * 
+ * version = version du produit après l'écriture : un consommateur ignore tout event dont la
+ * version est <= à celle qu'il a déjà, et détecte un trou si version - mergedCount (1 par défaut)
+ * ne tombe pas sur la sienne.
+ * En format delta (product.events.format=delta), un UPDATED ne contient que les champs listés
+ * dans changedFields ; changedFields absent = état complet du produit (snapshot).
+ * Les champs null ne sont pas sérialisés.
  */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class ProductEvent {
     
     private String productId;
@@ -27,6 +37,11 @@ public class ProductEvent {
     @JsonDeserialize(using = LocalDateTimeDeserializer.class)
     @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
     private LocalDateTime timestamp;
+    private Long version;
+    // Champs modifiés (format delta uniquement)
+    private List<String> changedFields;
+    // Nombre de mises à jour fusionnées dans cet event (absent si l'event n'a pas été regroupé)
+    private Integer mergedCount;
     
     // Constructeur par défaut pour Jackson
     public ProductEvent() {
@@ -110,12 +125,38 @@ public class ProductEvent {
         this.timestamp = timestamp;
     }
     
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+    
+    public List<String> getChangedFields() {
+        return changedFields;
+    }
+    
+    public void setChangedFields(List<String> changedFields) {
+        this.changedFields = changedFields;
+    }
+    
+    public Integer getMergedCount() {
+        return mergedCount;
+    }
+    
+    public void setMergedCount(Integer mergedCount) {
+        this.mergedCount = mergedCount;
+    }
+    
     @Override
     public String toString() {
         return "ProductEvent{" +
                 "productId='" + productId + '\'' +
                 ", name='" + name + '\'' +
                 ", eventType=" + eventType +
+                ", version=" + version +
+                (changedFields != null ? ", changedFields=" + changedFields : "") +
                 ", timestamp=" + timestamp +
                 '}';
     }
@@ -0,0 +1,50 @@
+package com.microcommerce.productservice.event;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Demande de snapshots envoyée par un consommateur des événements produits
+ * 
+ * Quand un service détecte un trou dans les versions (ou démarre à froid), il publie ce
+ * message sur product.exchange avec la routing key product.snapshot.request : l'état complet
+ * de chaque produit demandé repart alors en PRODUCT_UPDATED (sans changedFields).
+ */
+public class ProductSnapshotRequest {
+    
+    private List<String> productIds = new ArrayList<>();
+    private String requestedBy;
+    
+    // Constructeur par défaut pour Jackson
+    public ProductSnapshotRequest() {}
+    
+    public ProductSnapshotRequest(List<String> productIds, String requestedBy) {
+        this.productIds = productIds;
+        this.requestedBy = requestedBy;
+    }
+    
+    // Getters et setters
+    public List<String> getProductIds() {
+        return productIds;
+    }
+    
+    public void setProductIds(List<String> productIds) {
+        this.productIds = productIds;
+    }
+    
+    public String getRequestedBy() {
+        return requestedBy;
+    }
+    
+    public void setRequestedBy(String requestedBy) {
+        this.requestedBy = requestedBy;
+    }
+    
+    @Override
+    public String toString() {
+        return "ProductSnapshotRequest{" +
+                "productIds=" + productIds +
+                ", requestedBy='" + requestedBy + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,49 @@
+package com.microcommerce.productservice.event;
+
+import com.microcommerce.productservice.config.RabbitMQConfig;
+import com.microcommerce.productservice.service.ProductService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Écoute les demandes de snapshots des autres services et republie l'état complet des produits
+ */
+@Component
+public class ProductSnapshotRequestListener {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ProductSnapshotRequestListener.class);
+    
+    @Autowired
+    private ProductService productService;
+    
+    @Value("${product.internal.batch-max-size:500}")
+    private int maxProductsPerRequest;
+    
+    @RabbitListener(queues = RabbitMQConfig.PRODUCT_SNAPSHOT_REQUEST_QUEUE)
+    public void handleSnapshotRequest(ProductSnapshotRequest request) {
+        logger.info("Demande de snapshots reçue: {}", request);
+        
+        List<String> ids = request.getProductIds();
+        if (ids == null || ids.isEmpty()) {
+            logger.warn("Demande de snapshots sans productIds ignorée (de: {})", request.getRequestedBy());
+            return;
+        }
+        if (ids.size() > maxProductsPerRequest) {
+            logger.warn("Demande de {} snapshots tronquée à {} (de: {})",
+                       ids.size(), maxProductsPerRequest, request.getRequestedBy());
+            ids = ids.subList(0, maxProductsPerRequest);
+        }
+        
+        try {
+            productService.publishSnapshots(ids.stream().distinct().toList());
+        } catch (Exception e) {
+            logger.error("Erreur lors de la publication des snapshots: {}", request, e);
+        }
+    }
+}
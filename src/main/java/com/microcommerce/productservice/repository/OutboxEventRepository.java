@@ -0,0 +1,39 @@
+package com.microcommerce.productservice.repository;
+
+import com.microcommerce.productservice.entity.OutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.Update;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository pour l'outbox des événements produits
+ */
+@Repository
+public interface OutboxEventRepository extends MongoRepository<OutboxEvent, String> {
+    
+    // Les plus anciens événements en attente (parked=false), dans l'ordre d'écriture
+    List<OutboxEvent> findByParkedNotOrderByIdAsc(boolean parked, Pageable pageable);
+    
+    // Le plus ancien événement en attente (pour mesurer le retard du relais)
+    Optional<OutboxEvent> findFirstByParkedNotOrderByIdAsc(boolean parked);
+    
+    long countByParkedNot(boolean parked);
+    
+    long countByParked(boolean parked);
+    
+    // Note un échec d'envoi sur tout un lot
+    @Query("{ '_id' : { $in : ?0 } }")
+    @Update("{ $inc : { 'attempts' : 1 }, $set : { 'lastError' : ?1 } }")
+    void markFailed(Collection<String> ids, String error);
+    
+    // Met un événement de côté : le relais ne le reprend plus (à remettre à false à la main pour le renvoyer)
+    @Query("{ '_id' : ?0 }")
+    @Update("{ $inc : { 'attempts' : 1 }, $set : { 'lastError' : ?1, 'parked' : true } }")
+    void park(String id, String error);
+}
@@ -0,0 +1,10 @@
+package com.microcommerce.productservice.repository;
+
+import com.microcommerce.productservice.entity.Product;
+
+/**
+ * Un produit juste avant et juste après une même écriture atomique
+ * (before vient du findAndModify lui-même, pas d'une lecture faite avant)
+ */
+public record ProductChange(Product before, Product after) {
+}
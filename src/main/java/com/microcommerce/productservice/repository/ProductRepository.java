@@ -14,7 +14,7 @@ import java.util.Optional;
  * Spring Data MongoDB génère automatiquement les implémentations
  */
 @Repository
-public interface ProductRepository extends MongoRepository<Product, String> {
+public interface ProductRepository extends MongoRepository<Product, String>, ProductRepositoryCustom {
     
     // Recherche par nom (case insensitive)
     List<Product> findByNameContainingIgnoreCase(String name);
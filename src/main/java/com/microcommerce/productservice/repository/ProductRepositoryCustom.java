@@ -0,0 +1,43 @@
+package com.microcommerce.productservice.repository;
+
+import com.microcommerce.productservice.entity.Product;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Requêtes custom sur les produits qu'on ne peut pas exprimer avec les méthodes dérivées
+ * (implémentées avec MongoTemplate dans ProductRepositoryImpl)
+ */
+public interface ProductRepositoryCustom {
+    
+    // Tous les produits qui matchent le filtre, en ne ramenant que les champs demandés (null = tous)
+    List<Product> findMatching(Criteria filter, Set<String> fields);
+    
+    // Pagination par curseur : les produits qui matchent le filtre avec un _id > afterId, triés par _id
+    List<Product> findPageAfter(Criteria filter, String afterId, int limit, Set<String> fields);
+    
+    // Toutes les écritures ci-dessous incrémentent aussi la version du produit ($inc version)
+    
+    // Ajoute delta au stock en une seule opération atomique ($inc via findAndModify) et renvoie le produit à jour.
+    // Avec requireSufficientStock, un retrait ne passe que si stock >= -delta. Vide si pas trouvé ou garde non respectée
+    Optional<Product> adjustStock(String id, int delta, boolean requireSufficientStock);
+    
+    // Applique plusieurs deltas de stock ($inc) en un seul bulkWrite non ordonné, puis relit les produits concernés.
+    // Un delta avec une clé n'est appliqué qu'une fois : la clé est gardée dans le produit (les keyWindow dernières),
+    // donc rejouer le même lot (relivraison RabbitMQ) ne change plus rien
+    List<Product> adjustStockBulk(List<StockAdjustment> adjustments, int keyWindow);
+    
+    // Fixe le stock en une seule opération atomique ($set via findAndModify), vide si pas trouvé
+    Optional<Product> setStock(String id, int stock);
+    
+    // Remplace les champs modifiables d'un produit ($set via findAndModify), vide si pas trouvé.
+    // Renvoie l'état d'avant tel que vu par l'écriture elle-même, et celui d'après
+    Optional<ProductChange> updateDetails(String id, Product details);
+    
+    // Parcours de tout le catalogue via un curseur Mongo (à fermer après usage !)
+    Stream<Product> streamAll(int batchSize);
+}
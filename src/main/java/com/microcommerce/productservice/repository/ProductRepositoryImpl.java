@@ -0,0 +1,150 @@
+package com.microcommerce.productservice.repository;
+
+import com.microcommerce.productservice.entity.Product;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Implémentation des requêtes custom avec MongoTemplate
+ * Spring Data la branche automatiquement sur ProductRepository (suffixe Impl)
+ */
+public class ProductRepositoryImpl implements ProductRepositoryCustom {
+    
+    private static final String VERSION = "version";
+    // Clés des derniers deltas de stock appliqués (pas mappé dans Product, seulement utilisé par les requêtes)
+    private static final String APPLIED_STOCK_CHANGES = "appliedStockChanges";
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    @Override
+    public List<Product> findMatching(Criteria filter, Set<String> fields) {
+        Query query = new Query();
+        if (filter != null) {
+            query.addCriteria(filter);
+        }
+        project(query, fields);
+        return mongoTemplate.find(query, Product.class);
+    }
+    
+    @Override
+    public List<Product> findPageAfter(Criteria filter, String afterId, int limit, Set<String> fields) {
+        Query query = new Query();
+        if (filter != null) {
+            query.addCriteria(filter);
+        }
+        project(query, fields);
+        // Seek sur _id (index par défaut) : pas de skip, le coût ne dépend pas de la page demandée
+        if (afterId != null) {
+            query.addCriteria(Criteria.where("id").gt(afterId));
+        }
+        query.with(Sort.by(Sort.Direction.ASC, "id")).limit(limit);
+        return mongoTemplate.find(query, Product.class);
+    }
+    
+    @Override
+    public Optional<Product> adjustStock(String id, int delta, boolean requireSufficientStock) {
+        Criteria criteria = Criteria.where("id").is(id);
+        if (requireSufficientStock && delta < 0) {
+            criteria = criteria.and("stock").gte(-delta);
+        }
+        // Le filtre et l'incrément sont appliqués ensemble côté serveur : pas de mise à jour perdue
+        Product updated = mongoTemplate.findAndModify(
+                new Query(criteria),
+                new Update().inc("stock", delta).inc(VERSION, 1),
+                FindAndModifyOptions.options().returnNew(true),
+                Product.class);
+        return Optional.ofNullable(updated);
+    }
+    
+    @Override
+    public List<Product> adjustStockBulk(List<StockAdjustment> adjustments, int keyWindow) {
+        if (adjustments.isEmpty()) {
+            return List.of();
+        }
+        // Non ordonné : le serveur peut paralléliser, et les $inc sont commutatifs de toute façon
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        Set<String> ids = new LinkedHashSet<>();
+        for (StockAdjustment adjustment : adjustments) {
+            ids.add(adjustment.productId());
+            Criteria filter = Criteria.where("id").is(adjustment.productId());
+            Update update = new Update().inc("stock", adjustment.delta()).inc(VERSION, 1);
+            if (adjustment.key() != null) {
+                // Garde et marquage dans la même écriture atomique sur le document : déjà appliqué = pas de match
+                filter.and(APPLIED_STOCK_CHANGES).ne(adjustment.key());
+                update.push(APPLIED_STOCK_CHANGES).slice(-keyWindow).each(adjustment.key());
+            }
+            bulk.updateOne(new Query(filter), update);
+        }
+        bulk.execute();
+        
+        return mongoTemplate.find(new Query(Criteria.where("id").in(ids)), Product.class);
+    }
+    
+    @Override
+    public Optional<Product> setStock(String id, int stock) {
+        Product updated = mongoTemplate.findAndModify(
+                new Query(Criteria.where("id").is(id)),
+                new Update().set("stock", stock).inc(VERSION, 1),
+                FindAndModifyOptions.options().returnNew(true),
+                Product.class);
+        return Optional.ofNullable(updated);
+    }
+    
+    @Override
+    public Optional<ProductChange> updateDetails(String id, Product details) {
+        // Pas de save() du document complet : la version est incrémentée par le serveur,
+        // donc deux écritures concurrentes ne peuvent jamais produire la même version
+        Update update = new Update()
+                .set("name", details.getName())
+                .set("description", details.getDescription())
+                .set("price", details.getPrice())
+                .set("stock", details.getStock())
+                .set("category", details.getCategory())
+                .inc(VERSION, 1);
+        // returnNew(false) : on récupère le document tel qu'il était au moment même de l'écriture,
+        // donc un $inc de stock passé entre-temps fait bien partie de l'état d'avant
+        Product before = mongoTemplate.findAndModify(
+                new Query(Criteria.where("id").is(id)),
+                update,
+                FindAndModifyOptions.options().returnNew(false),
+                Product.class);
+        if (before == null) {
+            return Optional.empty();
+        }
+        // L'état d'après se déduit exactement de l'update (atomique sur le document)
+        Product after = new Product(details.getName(), details.getDescription(), details.getPrice(),
+                details.getStock(), details.getCategory());
+        after.setId(before.getId());
+        after.setVersion(before.getVersion() != null ? before.getVersion() + 1 : 1L);
+        return Optional.of(new ProductChange(before, after));
+    }
+    
+    /**
+     * Projection Mongo : seuls les champs demandés sortent de la base (moins de BSON à décoder)
+     */
+    private void project(Query query, Set<String> fields) {
+        if (fields != null && !fields.isEmpty()) {
+            query.fields().include(fields.toArray(new String[0]));
+        }
+    }
+    
+    @Override
+    public Stream<Product> streamAll(int batchSize) {
+        // Le driver ne ramène qu'un batch à la fois : on n'avance que quand le consommateur a traité le précédent
+        Query query = new Query().cursorBatchSize(batchSize);
+        return mongoTemplate.stream(query, Product.class);
+    }
+}
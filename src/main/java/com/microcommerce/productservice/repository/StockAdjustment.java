@@ -0,0 +1,8 @@
+package com.microcommerce.productservice.repository;
+
+/**
+ * Un delta de stock à appliquer sur un produit, au plus une fois par clé
+ * (ex: "42:ORDER_CREATED" pour la commande 42). Clé null = pas de garde, appliqué à chaque fois
+ */
+public record StockAdjustment(String productId, int delta, String key) {
+}
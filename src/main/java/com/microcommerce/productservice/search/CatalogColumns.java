@@ -0,0 +1,319 @@
+package com.microcommerce.productservice.search;
+
+import com.microcommerce.productservice.entity.Product;
+import com.microcommerce.productservice.service.CatalogStatistics;
+import com.microcommerce.productservice.service.ProductChangeListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Vue colonnaire du catalogue en mémoire pour la recherche à facettes
+ * 
+ * Chaque produit a un ordinal, et on garde une colonne primitive par champ filtrable
+ * (catégorie encodée en int, prix en centimes, stock). Une recherche à facettes est alors
+ * un seul parcours de ces tableaux : résultats + comptages par catégorie + histogramme
+ * des prix + disponibilité, sans aucun aller-retour vers MongoDB.
+ * Pas de scan MongoDB à la construction : les prix viennent de PriceIndex, catégories et stocks
+ * de CatalogStatistics, qui sont construits juste avant. Si l'une des deux sources n'est pas prête
+ * (MongoDB indisponible au démarrage), la construction est retentée toutes les
+ * product.facets.retry-delay-ms, en relançant aussi la source en retard.
+ */
+@Component
+public class CatalogColumns implements ProductChangeListener {
+    
+    private static final Logger logger = LoggerFactory.getLogger(CatalogColumns.class);
+    
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int NO_CATEGORY = -1;
+    private static final long NO_PRICE = Long.MIN_VALUE;
+    
+    @Autowired
+    private PriceIndex priceIndex;
+    
+    @Autowired
+    private CatalogStatistics catalogStatistics;
+    
+    @Autowired
+    private KeywordSearchIndex keywordSearchIndex;
+    
+    // Colonnes indexées par ordinal (ids[o] == null => case libre)
+    private String[] ids = new String[INITIAL_CAPACITY];
+    private int[] categoryCodes = new int[INITIAL_CAPACITY];
+    private long[] prices = new long[INITIAL_CAPACITY];
+    private int[] stocks = new int[INITIAL_CAPACITY];
+    private int highWaterMark;
+    private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+    private final Map<String, Integer> ordinalById = new HashMap<>();
+    
+    // Dictionnaire des catégories
+    private final List<String> categoryNames = new ArrayList<>();
+    private final Map<String, Integer> categoryCodeByName = new HashMap<>();
+    
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+    
+    /**
+     * Construit les colonnes à partir de l'index des prix et des stats du catalogue
+     * Passe après leurs propres listeners (HIGHEST_PRECEDENCE), qui font le seul scan MongoDB
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void build() {
+        if (!priceIndex.isReady() || !catalogStatistics.isReady()) {
+            logger.warn("Index des prix ou stats du catalogue pas prêts, vue colonnaire non construite (nouvel essai plus tard)");
+            return;
+        }
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            Arrays.fill(ids, null);
+            highWaterMark = 0;
+            freeOrdinals.clear();
+            ordinalById.clear();
+            Map<String, Long> priceById = new HashMap<>();
+            priceIndex.forEachPrice(priceById::put);
+            // Ordinaux dans l'ordre des IDs, comme le scan MongoDB : les résultats gardent un ordre stable
+            List<Row> rows = new ArrayList<>();
+            catalogStatistics.forEachProduct((id, category, stock) -> rows.add(new Row(id, category, stock)));
+            rows.sort(Comparator.comparing(Row::id));
+            for (Row row : rows) {
+                upsert(row.id(), row.category(), priceById.getOrDefault(row.id(), NO_PRICE), row.stock());
+            }
+            ready = true;
+            logger.info("Vue colonnaire du catalogue construite: {} produits en {} ms",
+                       ordinalById.size(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            logger.error("Échec de la construction de la vue colonnaire du catalogue", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Tant que la vue n'est pas construite : relance les sources pas prêtes (PriceIndex ne se
+     * reconstruit pas tout seul, et la réconciliation des stats n'est que toutes les 5 minutes) puis la vue
+     */
+    @Scheduled(initialDelayString = "${product.facets.retry-delay-ms:5000}",
+               fixedDelayString = "${product.facets.retry-delay-ms:5000}")
+    public void retryBuild() {
+        if (ready) {
+            return;
+        }
+        if (!priceIndex.isReady()) {
+            priceIndex.build();
+        }
+        if (!catalogStatistics.isReady()) {
+            catalogStatistics.reconcile();
+        }
+        build();
+    }
+    
+    public boolean isReady() {
+        return ready;
+    }
+    
+    /**
+     * Prête pour cette requête : avec un mot-clé il faut aussi l'index inversé, sinon on ne
+     * trouverait aucun produit (et toutes les facettes à 0) au lieu de dire que ce n'est pas prêt
+     */
+    public boolean isReady(FacetQuery query) {
+        return ready && (!query.hasKeyword() || keywordSearchIndex.isReady());
+    }
+    
+    /**
+     * Applique les filtres et calcule toutes les facettes en un seul parcours
+     * @param priceBounds bornes (en euros, croissantes) qui séparent les tranches de l'histogramme
+     * @throws IllegalStateException si la vue (ou l'index des mots-clés) n'est pas encore prête
+     */
+    public FacetResult search(FacetQuery query, List<BigDecimal> priceBounds) {
+        if (!isReady(query)) {
+            throw new IllegalStateException("La vue du catalogue n'est pas encore prête");
+        }
+        long[] boundsInCents = priceBounds.stream()
+                .mapToLong(bound -> bound.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact())
+                .toArray();
+        long minCents = query.minPrice() != null
+                ? query.minPrice().movePointRight(2).setScale(0, RoundingMode.CEILING).longValue() : Long.MIN_VALUE;
+        long maxCents = query.maxPrice() != null
+                ? query.maxPrice().movePointRight(2).setScale(0, RoundingMode.FLOOR).longValue() : Long.MAX_VALUE;
+        boolean priceFiltered = query.minPrice() != null || query.maxPrice() != null;
+        
+        // Les mots-clés passent par l'index inversé : on ne parcourt que les produits qui matchent
+        List<String> keywordMatches = query.hasKeyword() ? keywordSearchIndex.search(query.keyword()) : null;
+        
+        lock.readLock().lock();
+        try {
+            boolean[] acceptedCategories = acceptedCategories(query);
+            List<String> matchingIds = new ArrayList<>();
+            long[] categoryCounts = new long[categoryNames.size()];
+            long[] bucketCounts = new long[boundsInCents.length + 1];
+            long inStockCount = 0;
+            long outOfStockCount = 0;
+            
+            int candidates = keywordMatches != null ? keywordMatches.size() : highWaterMark;
+            for (int i = 0; i < candidates; i++) {
+                int ordinal;
+                if (keywordMatches != null) {
+                    Integer found = ordinalById.get(keywordMatches.get(i));
+                    if (found == null) {
+                        continue;
+                    }
+                    ordinal = found;
+                } else {
+                    ordinal = i;
+                    if (ids[ordinal] == null) {
+                        continue;
+                    }
+                }
+                
+                int categoryCode = categoryCodes[ordinal];
+                long price = prices[ordinal];
+                boolean available = stocks[ordinal] > 0;
+                
+                boolean categoryOk = acceptedCategories == null
+                        || (categoryCode != NO_CATEGORY && acceptedCategories[categoryCode]);
+                boolean priceOk = !priceFiltered || (price != NO_PRICE && price >= minCents && price <= maxCents);
+                boolean stockOk = query.inStock() == null || query.inStock() == available;
+                
+                // Chaque facette compte avec tous les filtres sauf le sien
+                if (priceOk && stockOk && categoryCode != NO_CATEGORY) {
+                    categoryCounts[categoryCode]++;
+                }
+                if (categoryOk && stockOk && price != NO_PRICE) {
+                    bucketCounts[bucketOf(price, boundsInCents)]++;
+                }
+                if (categoryOk && priceOk) {
+                    if (available) {
+                        inStockCount++;
+                    } else {
+                        outOfStockCount++;
+                    }
+                }
+                if (categoryOk && priceOk && stockOk) {
+                    matchingIds.add(ids[ordinal]);
+                }
+            }
+            
+            Map<String, Long> categories = new TreeMap<>();
+            for (int code = 0; code < categoryCounts.length; code++) {
+                if (categoryCounts[code] > 0) {
+                    categories.put(categoryNames.get(code), categoryCounts[code]);
+                }
+            }
+            return new FacetResult(matchingIds, categories, bucketCounts, inStockCount, outOfStockCount);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public void onProductSaved(Product current) {
+        lock.writeLock().lock();
+        try {
+            upsert(current);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public void onProductDeleted(String productId) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinalById.remove(productId);
+            if (ordinal != null) {
+                ids[ordinal] = null;
+                freeOrdinals.push(ordinal);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private void upsert(Product product) {
+        upsert(product.getId(), product.getCategory(),
+               product.getPrice() != null ? PriceIndex.toCents(product.getPrice()) : NO_PRICE,
+               product.getStock() != null ? product.getStock() : 0);
+    }
+    
+    private void upsert(String id, String category, long priceInCents, int stock) {
+        Integer ordinal = ordinalById.get(id);
+        if (ordinal == null) {
+            ordinal = allocateOrdinal();
+            ordinalById.put(id, ordinal);
+        }
+        ids[ordinal] = id;
+        categoryCodes[ordinal] = category != null ? categoryCode(category) : NO_CATEGORY;
+        prices[ordinal] = priceInCents;
+        stocks[ordinal] = stock;
+    }
+    
+    private record Row(String id, String category, int stock) {
+    }
+    
+    private int allocateOrdinal() {
+        if (!freeOrdinals.isEmpty()) {
+            return freeOrdinals.pop();
+        }
+        if (highWaterMark == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            categoryCodes = Arrays.copyOf(categoryCodes, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+            stocks = Arrays.copyOf(stocks, capacity);
+        }
+        return highWaterMark++;
+    }
+    
+    private int categoryCode(String category) {
+        return categoryCodeByName.computeIfAbsent(category, name -> {
+            categoryNames.add(name);
+            return categoryNames.size() - 1;
+        });
+    }
+    
+    /**
+     * Catégories acceptées par le filtre, indexées par code (null = pas de filtre)
+     */
+    private boolean[] acceptedCategories(FacetQuery query) {
+        if (query.categories() == null || query.categories().isEmpty()) {
+            return null;
+        }
+        boolean[] accepted = new boolean[categoryNames.size()];
+        for (String category : query.categories()) {
+            Integer code = categoryCodeByName.get(category);
+            if (code != null) {
+                accepted[code] = true;
+            }
+        }
+        return accepted;
+    }
+    
+    /**
+     * Tranche de l'histogramme : 0 = sous la première borne, n = au-dessus de la dernière
+     */
+    private static int bucketOf(long price, long[] bounds) {
+        int bucket = Arrays.binarySearch(bounds, price);
+        return bucket >= 0 ? bucket + 1 : -bucket - 1;
+    }
+}
@@ -0,0 +1,21 @@
+package com.microcommerce.productservice.search;
+
+import java.math.BigDecimal;
+import java.util.Set;
+
+/**
+ * Filtres combinés de la recherche à facettes (tout est optionnel)
+ * 
+ * @param keyword    mots-clés cherchés dans le nom et la description
+ * @param categories catégories acceptées (vide = toutes)
+ * @param minPrice   prix minimum inclus
+ * @param maxPrice   prix maximum inclus
+ * @param inStock    true = en stock seulement, false = en rupture seulement, null = peu importe
+ */
+public record FacetQuery(String keyword, Set<String> categories, BigDecimal minPrice,
+                         BigDecimal maxPrice, Boolean inStock) {
+    
+    public boolean hasKeyword() {
+        return keyword != null && !keyword.isBlank();
+    }
+}
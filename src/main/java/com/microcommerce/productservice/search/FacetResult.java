@@ -0,0 +1,20 @@
+package com.microcommerce.productservice.search;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Résultat brut d'une recherche à facettes, calculé en une seule passe par CatalogColumns
+ * 
+ * Les compteurs de chaque facette ignorent le filtre de cette facette (mais appliquent tous
+ * les autres), comme ça la sidebar montre aussi les catégories/prix qu'on pourrait ajouter
+ * 
+ * @param matchingIds      IDs des produits qui passent tous les filtres (pertinence ou ordre du catalogue)
+ * @param categoryCounts   nombre de produits par catégorie
+ * @param priceBucketCounts nombre de produits par tranche de prix (mêmes indices que les bornes)
+ * @param inStockCount     produits en stock
+ * @param outOfStockCount  produits en rupture
+ */
+public record FacetResult(List<String> matchingIds, Map<String, Long> categoryCounts,
+                          long[] priceBucketCounts, long inStockCount, long outOfStockCount) {
+}
@@ -0,0 +1,196 @@
+package com.microcommerce.productservice.search;
+
+import com.microcommerce.productservice.entity.Product;
+import com.microcommerce.productservice.repository.ProductRepository;
+import com.microcommerce.productservice.service.ProductChangeListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Index inversé en mémoire pour la recherche par mot-clé
+ * 
+ * Remplace le $regex sur name/description (qui scanne toute la collection) :
+ * on garde pour chaque token la liste des produits qui le contiennent, avec un poids
+ * plus fort quand le token est dans le nom. Le dernier mot tapé peut être un préfixe
+ * ("casq" trouve "casque"). Construit au démarrage puis tenu à jour par les écritures.
+ */
+@Component
+public class KeywordSearchIndex implements ProductChangeListener {
+    
+    private static final Logger logger = LoggerFactory.getLogger(KeywordSearchIndex.class);
+    
+    private static final int NAME_WEIGHT = 3;
+    private static final int DESCRIPTION_WEIGHT = 1;
+    private static final int BUILD_BATCH_SIZE = 1000;
+    
+    @Autowired
+    private ProductRepository productRepository;
+    
+    // token -> (productId -> poids) ; trié pour pouvoir faire des recherches par préfixe
+    private final TreeMap<String, Map<String, Integer>> postings = new TreeMap<>();
+    // productId -> tokens indexés, pour pouvoir retirer un produit de l'index
+    private final Map<String, Set<String>> tokensByProduct = new HashMap<>();
+    
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+    
+    /**
+     * Construit l'index à partir de toute la collection (une seule fois au démarrage)
+     * Les écritures concurrentes attendent la fin de la construction
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try (Stream<Product> products = productRepository.streamAll(BUILD_BATCH_SIZE)) {
+            postings.clear();
+            tokensByProduct.clear();
+            products.forEach(this::index);
+            ready = true;
+            logger.info("Index de recherche construit: {} produits, {} tokens en {} ms",
+                       tokensByProduct.size(), postings.size(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            logger.error("Échec de la construction de l'index de recherche, on reste sur MongoDB", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Tant que l'index n'est pas construit, la recherche doit passer par MongoDB
+     */
+    public boolean isReady() {
+        return ready;
+    }
+    
+    /**
+     * Recherche les produits contenant tous les mots du mot-clé, classés par pertinence
+     * @return les IDs des produits, du plus pertinent au moins pertinent
+     */
+    public List<String> search(String keyword) {
+        List<String> queryTokens = TextNormalizer.tokenize(keyword);
+        if (queryTokens.isEmpty()) {
+            return List.of();
+        }
+        
+        lock.readLock().lock();
+        try {
+            Map<String, Integer> scores = null;
+            for (int i = 0; i < queryTokens.size(); i++) {
+                boolean lastToken = i == queryTokens.size() - 1;
+                Map<String, Integer> tokenScores = scoreToken(queryTokens.get(i), lastToken);
+                scores = scores == null ? tokenScores : intersect(scores, tokenScores);
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+            
+            List<Map.Entry<String, Integer>> ranked = new ArrayList<>(scores.entrySet());
+            ranked.sort(Map.Entry.<String, Integer>comparingByValue(Comparator.reverseOrder())
+                    .thenComparing(Map.Entry.comparingByKey()));
+            return ranked.stream().map(Map.Entry::getKey).toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public void onProductSaved(Product current) {
+        lock.writeLock().lock();
+        try {
+            remove(current.getId());
+            index(current);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public void onProductDeleted(String productId) {
+        lock.writeLock().lock();
+        try {
+            remove(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Scores des produits pour un token de la requête : match exact = poids x2, préfixe = poids
+     * (le préfixe n'est autorisé que sur le dernier mot, celui qui est peut-être encore en cours de frappe)
+     */
+    private Map<String, Integer> scoreToken(String token, boolean allowPrefix) {
+        Map<String, Integer> scores = new HashMap<>();
+        Map<String, Integer> exact = postings.get(token);
+        if (exact != null) {
+            exact.forEach((id, weight) -> scores.merge(id, weight * 2, Math::max));
+        }
+        if (allowPrefix) {
+            Map<String, Map<String, Integer>> prefixed = postings.subMap(token, false, token + Character.MAX_VALUE, false);
+            prefixed.values().forEach(products ->
+                    products.forEach((id, weight) -> scores.merge(id, weight, Math::max)));
+        }
+        return scores;
+    }
+    
+    /**
+     * Garde uniquement les produits présents des deux côtés, en cumulant les scores
+     */
+    private Map<String, Integer> intersect(Map<String, Integer> left, Map<String, Integer> right) {
+        Map<String, Integer> smaller = left.size() <= right.size() ? left : right;
+        Map<String, Integer> bigger = smaller == left ? right : left;
+        Map<String, Integer> result = new HashMap<>();
+        smaller.forEach((id, score) -> {
+            Integer other = bigger.get(id);
+            if (other != null) {
+                result.put(id, score + other);
+            }
+        });
+        return result;
+    }
+    
+    private void index(Product product) {
+        Map<String, Integer> weights = new HashMap<>();
+        for (String token : TextNormalizer.tokenize(product.getName())) {
+            weights.merge(token, NAME_WEIGHT, Integer::sum);
+        }
+        for (String token : TextNormalizer.tokenize(product.getDescription())) {
+            weights.merge(token, DESCRIPTION_WEIGHT, Integer::sum);
+        }
+        
+        weights.forEach((token, weight) ->
+                postings.computeIfAbsent(token, key -> new HashMap<>()).put(product.getId(), weight));
+        tokensByProduct.put(product.getId(), new HashSet<>(weights.keySet()));
+    }
+    
+    private void remove(String productId) {
+        Set<String> tokens = tokensByProduct.remove(productId);
+        if (tokens == null) {
+            return;
+        }
+        for (String token : tokens) {
+            Map<String, Integer> products = postings.get(token);
+            if (products != null) {
+                products.remove(productId);
+                if (products.isEmpty()) {
+                    postings.remove(token);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.microcommerce.productservice.search;
+
+import com.microcommerce.productservice.dto.ProductSuggestionDto;
+import com.microcommerce.productservice.entity.Product;
+import com.microcommerce.productservice.repository.ProductRepository;
+import com.microcommerce.productservice.service.ProductChangeListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.Stream;
+
+/**
+ * Index d'autocomplétion sur les noms de produits
+ * 
+ * Structure compacte et immuable : un tableau trié de clés normalisées (le nom complet et
+ * chaque fin de nom à partir d'un mot, pour que "galaxy" trouve "Samsung Galaxy S24"),
+ * avec des tableaux parallèles. Un préfixe = deux recherches dichotomiques.
+ * 
+ * Les lectures se font sans verrou sur un snapshot volatile. Création, renommage et suppression
+ * reconstruisent un nouveau snapshot (copy-on-write) ; un simple changement de stock met juste
+ * à jour la case de stock en place, pas besoin de tout reconstruire pour ça.
+ * 
+ * Si la construction au démarrage échoue (MongoDB indisponible), l'index n'est pas prêt
+ * (/search/suggest répond 503) et la construction est retentée toutes les product.suggest.retry-delay-ms.
+ */
+@Component
+public class NameSuggestIndex implements ProductChangeListener {
+    
+    private static final Logger logger = LoggerFactory.getLogger(NameSuggestIndex.class);
+    
+    private static final int BUILD_BATCH_SIZE = 1000;
+    
+    @Autowired
+    private ProductRepository productRepository;
+    
+    private volatile Snapshot snapshot = Snapshot.build(List.of());
+    private volatile boolean ready;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void build() {
+        long start = System.currentTimeMillis();
+        List<Entry> entries = new ArrayList<>();
+        try (Stream<Product> products = productRepository.streamAll(BUILD_BATCH_SIZE)) {
+            products.forEach(product -> entries.add(Entry.of(product)));
+        } catch (RuntimeException e) {
+            // Pas de quoi bloquer le démarrage : pas prêt, on retente plus tard
+            logger.error("Échec de la construction de l'index d'autocomplétion, nouvel essai plus tard", e);
+            return;
+        }
+        snapshot = Snapshot.build(entries);
+        ready = true;
+        logger.info("Index d'autocomplétion construit: {} produits, {} clés en {} ms",
+                   entries.size(), snapshot.keys.length, System.currentTimeMillis() - start);
+    }
+    
+    /**
+     * Retente la construction tant qu'elle n'a pas réussi
+     */
+    @Scheduled(initialDelayString = "${product.suggest.retry-delay-ms:5000}",
+               fixedDelayString = "${product.suggest.retry-delay-ms:5000}")
+    public void retryBuild() {
+        if (!ready) {
+            build();
+        }
+    }
+    
+    /**
+     * Tant que l'index n'est pas construit il ne connaît que les produits écrits depuis le démarrage
+     */
+    public boolean isReady() {
+        return ready;
+    }
+    
+    /**
+     * Les N meilleures complétions pour un préfixe : produits en stock d'abord, puis par stock décroissant
+     */
+    public List<ProductSuggestionDto> suggest(String prefix, int limit) {
+        String normalized = TextNormalizer.normalize(prefix);
+        if (normalized.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        return snapshot.suggest(normalized, limit);
+    }
+    
+    @Override
+    public synchronized void onProductSaved(Product current) {
+        Snapshot currentSnapshot = snapshot;
+        Integer ordinal = currentSnapshot.ordinalById.get(current.getId());
+        
+        // Même nom qu'avant : seul le classement peut bouger, on met à jour le stock en place
+        if (ordinal != null && Objects.equals(currentSnapshot.names[ordinal], current.getName())) {
+            currentSnapshot.stock.set(ordinal, stockOf(current));
+            return;
+        }
+        
+        List<Entry> entries = currentSnapshot.entries();
+        entries.removeIf(entry -> entry.id().equals(current.getId()));
+        entries.add(Entry.of(current));
+        snapshot = Snapshot.build(entries);
+    }
+    
+    @Override
+    public synchronized void onProductDeleted(String productId) {
+        Snapshot currentSnapshot = snapshot;
+        if (!currentSnapshot.ordinalById.containsKey(productId)) {
+            return;
+        }
+        List<Entry> entries = currentSnapshot.entries();
+        entries.removeIf(entry -> entry.id().equals(productId));
+        snapshot = Snapshot.build(entries);
+    }
+    
+    private static int stockOf(Product product) {
+        return product.getStock() != null ? product.getStock() : 0;
+    }
+    
+    private record Entry(String id, String name, int stock) {
+        
+        static Entry of(Product product) {
+            return new Entry(product.getId(), product.getName(), stockOf(product));
+        }
+    }
+    
+    /**
+     * Version figée de l'index. Seul le tableau de stock peut changer (mise à jour atomique case par case)
+     */
+    private static final class Snapshot {
+        
+        // Clés triées, et pour chacune l'ordinal du produit correspondant
+        private final String[] keys;
+        private final int[] keyOrdinals;
+        // Données des produits, indexées par ordinal
+        private final String[] ids;
+        private final String[] names;
+        private final AtomicIntegerArray stock;
+        private final Map<String, Integer> ordinalById;
+        
+        private Snapshot(String[] keys, int[] keyOrdinals, String[] ids, String[] names,
+                         AtomicIntegerArray stock, Map<String, Integer> ordinalById) {
+            this.keys = keys;
+            this.keyOrdinals = keyOrdinals;
+            this.ids = ids;
+            this.names = names;
+            this.stock = stock;
+            this.ordinalById = ordinalById;
+        }
+        
+        static Snapshot build(List<Entry> entries) {
+            int count = entries.size();
+            String[] ids = new String[count];
+            String[] names = new String[count];
+            AtomicIntegerArray stock = new AtomicIntegerArray(count);
+            Map<String, Integer> ordinalById = new HashMap<>(count * 2);
+            List<KeyRef> keyRefs = new ArrayList<>(count * 2);
+            
+            for (int ordinal = 0; ordinal < count; ordinal++) {
+                Entry entry = entries.get(ordinal);
+                ids[ordinal] = entry.id();
+                names[ordinal] = entry.name();
+                stock.set(ordinal, entry.stock());
+                ordinalById.put(entry.id(), ordinal);
+                for (String key : keysFor(entry.name())) {
+                    keyRefs.add(new KeyRef(key, ordinal));
+                }
+            }
+            
+            keyRefs.sort(Comparator.comparing(KeyRef::key).thenComparingInt(KeyRef::ordinal));
+            String[] keys = new String[keyRefs.size()];
+            int[] keyOrdinals = new int[keyRefs.size()];
+            for (int i = 0; i < keyRefs.size(); i++) {
+                keys[i] = keyRefs.get(i).key();
+                keyOrdinals[i] = keyRefs.get(i).ordinal();
+            }
+            return new Snapshot(keys, keyOrdinals, ids, names, stock, Map.copyOf(ordinalById));
+        }
+        
+        /**
+         * Le nom normalisé complet, plus chaque fin de nom qui commence à un mot
+         */
+        private static List<String> keysFor(String name) {
+            String normalized = TextNormalizer.normalize(name);
+            List<String> keys = new ArrayList<>();
+            if (normalized.isEmpty()) {
+                return keys;
+            }
+            keys.add(normalized);
+            for (int i = 1; i < normalized.length(); i++) {
+                if (!Character.isLetterOrDigit(normalized.charAt(i - 1)) && Character.isLetterOrDigit(normalized.charAt(i))) {
+                    keys.add(normalized.substring(i));
+                }
+            }
+            return keys;
+        }
+        
+        List<ProductSuggestionDto> suggest(String prefix, int limit) {
+            int from = lowerBound(prefix);
+            int to = lowerBound(prefix + Character.MAX_VALUE);
+            if (from >= to) {
+                return List.of();
+            }
+            
+            // Tas borné à `limit` éléments, le "moins bon" en tête pour pouvoir l'éjecter
+            PriorityQueue<Candidate> best = new PriorityQueue<>(limit + 1, Candidate.RANKING.reversed());
+            Set<Integer> seen = new HashSet<>();
+            for (int i = from; i < to; i++) {
+                int ordinal = keyOrdinals[i];
+                if (!seen.add(ordinal)) {
+                    continue; // plusieurs mots du même nom matchent le préfixe
+                }
+                best.add(new Candidate(ids[ordinal], names[ordinal], stock.get(ordinal)));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+            
+            List<Candidate> ranked = new ArrayList<>(best);
+            ranked.sort(Candidate.RANKING);
+            List<ProductSuggestionDto> suggestions = new ArrayList<>(ranked.size());
+            for (Candidate candidate : ranked) {
+                suggestions.add(new ProductSuggestionDto(candidate.id(), candidate.name(), candidate.stock() > 0));
+            }
+            return suggestions;
+        }
+        
+        /**
+         * Première position dont la clé est >= key (les clés peuvent être en double)
+         */
+        private int lowerBound(String key) {
+            int low = 0;
+            int high = keys.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (keys[mid].compareTo(key) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+        
+        List<Entry> entries() {
+            List<Entry> entries = new ArrayList<>(ids.length + 1);
+            for (int ordinal = 0; ordinal < ids.length; ordinal++) {
+                entries.add(new Entry(ids[ordinal], names[ordinal], stock.get(ordinal)));
+            }
+            return entries;
+        }
+    }
+    
+    private record KeyRef(String key, int ordinal) {
+    }
+    
+    /**
+     * Un produit candidat, avec son stock lu une seule fois pour que le tri reste cohérent
+     */
+    private record Candidate(String id, String name, int stock) {
+        
+        // En stock d'abord, puis le plus gros stock, puis le nom le plus court (le plus proche du préfixe)
+        static final Comparator<Candidate> RANKING = Comparator
+                .comparingInt((Candidate candidate) -> candidate.stock() > 0 ? 0 : 1)
+                .thenComparing(Comparator.comparingInt(Candidate::stock).reversed())
+                .thenComparingInt(candidate -> candidate.name().length())
+                .thenComparing(Candidate::id);
+    }
+}
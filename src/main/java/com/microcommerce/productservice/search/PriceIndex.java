@@ -0,0 +1,291 @@
+package com.microcommerce.productservice.search;
+
+import com.microcommerce.productservice.entity.Product;
+import com.microcommerce.productservice.repository.ProductRepository;
+import com.microcommerce.productservice.service.ProductChangeListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Index des prix en mémoire pour les recherches par fourchette de prix
+ * 
+ * Le prix est stocké en BigDecimal (donc en string dans Mongo), ce qui rend les $gt/$lt
+ * lents et en plus faux (comparaison lexicographique). Ici on garde les prix en centimes
+ * dans un long[] trié, avec les IDs dans un tableau parallèle : une fourchette = deux
+ * recherches dichotomiques, et le tri par prix est gratuit.
+ */
+@Component
+public class PriceIndex implements ProductChangeListener {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PriceIndex.class);
+    
+    private static final int BUILD_BATCH_SIZE = 1000;
+    private static final int INITIAL_CAPACITY = 64;
+    
+    @Autowired
+    private ProductRepository productRepository;
+    
+    // Triés par (prix, id) ; seules les `size` premières cases sont utilisées
+    private long[] prices = new long[INITIAL_CAPACITY];
+    private String[] ids = new String[INITIAL_CAPACITY];
+    private int size;
+    // Prix actuellement indexé pour chaque produit, pour le retrouver au moment de le déplacer
+    private final Map<String, Long> priceById = new HashMap<>();
+    
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+    
+    // Avant CatalogColumns, qui reprend les prix de cet index
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void build() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try (Stream<Product> products = productRepository.streamAll(BUILD_BATCH_SIZE)) {
+            List<Product> priced = new ArrayList<>();
+            products.filter(product -> product.getPrice() != null).forEach(priced::add);
+            priced.sort(Comparator.comparingLong((Product product) -> toCents(product.getPrice()))
+                    .thenComparing(Product::getId));
+            
+            int capacity = Math.max(INITIAL_CAPACITY, priced.size() * 2);
+            prices = new long[capacity];
+            ids = new String[capacity];
+            priceById.clear();
+            size = priced.size();
+            for (int i = 0; i < size; i++) {
+                Product product = priced.get(i);
+                prices[i] = toCents(product.getPrice());
+                ids[i] = product.getId();
+                priceById.put(product.getId(), prices[i]);
+            }
+            ready = true;
+            logger.info("Index des prix construit: {} produits en {} ms", size, System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            logger.error("Échec de la construction de l'index des prix, on reste sur MongoDB", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public boolean isReady() {
+        return ready;
+    }
+    
+    /**
+     * IDs des produits avec min < prix < max (bornes exclues, comme findByPriceBetween)
+     * @param descending du plus cher au moins cher si true
+     * @param limit nombre max d'IDs (<= 0 pour tout avoir)
+     */
+    public List<String> findIdsInRange(BigDecimal min, BigDecimal max, boolean descending, int limit) {
+        // p > min  <=>  centimes(p) > floor(min * 100) ; p < max  <=>  centimes(p) < ceil(max * 100)
+        long minExclusive = min.movePointRight(2).setScale(0, RoundingMode.FLOOR).longValue();
+        long maxExclusive = max.movePointRight(2).setScale(0, RoundingMode.CEILING).longValue();
+        
+        lock.readLock().lock();
+        try {
+            int from = upperBound(minExclusive);
+            int to = lowerBound(maxExclusive);
+            int count = Math.max(0, to - from);
+            if (limit > 0) {
+                count = Math.min(count, limit);
+            }
+            
+            List<String> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                result.add(descending ? ids[to - 1 - i] : ids[from + i]);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Passe chaque (ID, prix en centimes) indexé au consumer, sous le verrou de lecture
+     */
+    public void forEachPrice(BiConsumer<String, Long> consumer) {
+        lock.readLock().lock();
+        try {
+            priceById.forEach(consumer);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Un ID avec son prix en centimes (de quoi faire un curseur de pagination)
+     */
+    public record PricedId(String id, long cents) {
+    }
+    
+    /**
+     * Une page des produits avec min < prix < max, triés par (prix, id) croissants, en commençant
+     * juste après le couple (afterCents, afterId). afterId null = depuis le début de la fourchette
+     */
+    public List<PricedId> findPageInRange(BigDecimal min, BigDecimal max, long afterCents, String afterId, int limit) {
+        long minExclusive = min.movePointRight(2).setScale(0, RoundingMode.FLOOR).longValue();
+        long maxExclusive = max.movePointRight(2).setScale(0, RoundingMode.CEILING).longValue();
+        
+        lock.readLock().lock();
+        try {
+            int from = upperBound(minExclusive);
+            if (afterId != null) {
+                int position = insertionPoint(afterCents, afterId);
+                if (positionOf(afterCents, afterId) == position) {
+                    position++; // le dernier de la page précédente est toujours là : on repart juste après
+                }
+                from = Math.max(from, position);
+            }
+            int to = Math.min(lowerBound(maxExclusive), from + Math.max(0, limit));
+            
+            List<PricedId> result = new ArrayList<>(Math.max(0, to - from));
+            for (int i = from; i < to; i++) {
+                result.add(new PricedId(ids[i], prices[i]));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public void onProductSaved(Product current) {
+        if (current.getPrice() == null) {
+            onProductDeleted(current.getId());
+            return;
+        }
+        long cents = toCents(current.getPrice());
+        
+        lock.writeLock().lock();
+        try {
+            Long previous = priceById.get(current.getId());
+            if (previous != null && previous == cents) {
+                return; // prix inchangé (typiquement un changement de stock) : rien à faire
+            }
+            if (previous != null) {
+                removeAt(positionOf(previous, current.getId()));
+            }
+            insert(cents, current.getId());
+            priceById.put(current.getId(), cents);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public void onProductDeleted(String productId) {
+        lock.writeLock().lock();
+        try {
+            Long previous = priceById.remove(productId);
+            if (previous != null) {
+                removeAt(positionOf(previous, productId));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public static long toCents(BigDecimal price) {
+        return price.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+    
+    private void insert(long cents, String id) {
+        if (size == prices.length) {
+            prices = Arrays.copyOf(prices, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        int position = insertionPoint(cents, id);
+        System.arraycopy(prices, position, prices, position + 1, size - position);
+        System.arraycopy(ids, position, ids, position + 1, size - position);
+        prices[position] = cents;
+        ids[position] = id;
+        size++;
+    }
+    
+    private void removeAt(int position) {
+        if (position < 0) {
+            return;
+        }
+        System.arraycopy(prices, position + 1, prices, position, size - position - 1);
+        System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+        size--;
+        ids[size] = null;
+    }
+    
+    /**
+     * Position exacte d'un couple (prix, id), -1 s'il n'est pas dans l'index
+     */
+    private int positionOf(long cents, String id) {
+        int position = insertionPoint(cents, id);
+        return position < size && prices[position] == cents && ids[position].equals(id) ? position : -1;
+    }
+    
+    /**
+     * Première position dont le couple (prix, id) est >= celui donné
+     */
+    private int insertionPoint(long cents, String id) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (prices[mid] < cents || (prices[mid] == cents && ids[mid].compareTo(id) < 0)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * Première position dont le prix est >= cents
+     */
+    private int lowerBound(long cents) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (prices[mid] < cents) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * Première position dont le prix est > cents
+     */
+    private int upperBound(long cents) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (prices[mid] <= cents) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
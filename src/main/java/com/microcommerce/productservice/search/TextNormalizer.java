@@ -0,0 +1,53 @@
+package com.microcommerce.productservice.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Normalisation du texte pour la recherche
+ * 
+ * Minuscules + suppression des accents ("Écouteurs" -> "ecouteurs") pour que
+ * les recherches marchent avec ou sans accents sur notre catalogue en français
+ */
+public final class TextNormalizer {
+    
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+    
+    // Mots trop fréquents pour servir à quelque chose dans une recherche
+    private static final Set<String> STOP_WORDS = Set.of(
+            "le", "la", "les", "un", "une", "des", "de", "du", "et", "ou",
+            "en", "au", "aux", "avec", "pour", "par", "sur", "sans", "the", "and", "with"
+    );
+    
+    private TextNormalizer() {
+    }
+    
+    /**
+     * Minuscules, sans accents, espaces normalisés
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT).trim();
+    }
+    
+    /**
+     * Découpe le texte en tokens normalisés (sans les mots vides ni les lettres isolées)
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARATORS.split(normalize(text))) {
+            if (token.length() > 1 && !STOP_WORDS.contains(token)) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
@@ -14,6 +14,7 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.Optional;
 
 /**
  * Filtre JWT pour le Product Service
@@ -31,34 +32,25 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         
         final String authorizationHeader = request.getHeader("Authorization");
         
-        String username = null;
-        String jwt = null;
-        
         // Vérifier si le header Authorization contient un token Bearer
-        if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
-            jwt = authorizationHeader.substring(7); // Enlever "Bearer "
-            try {
-                username = jwtUtil.extractUsername(jwt);
-            } catch (Exception e) {
-                logger.error("Erreur lors de l'extraction du username du token JWT", e);
-            }
-        }
-        
-        // Si on a un username et qu'aucune authentification n'est déjà en place
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+        // et qu'aucune authentification n'est déjà en place
+        if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
+            String jwt = authorizationHeader.substring(7); // Enlever "Bearer "
             
-            // Valider le token
-            if (jwtUtil.validateToken(jwt)) {
-                // Extraire les informations du token
-                String userId = jwtUtil.extractUserId(jwt);
-                String role = jwtUtil.extractRole(jwt);
+            // Un seul parsing du token (ou aucun s'il est déjà dans le cache des tokens vérifiés)
+            Optional<JwtPrincipal> verified = jwtUtil.verify(jwt);
+            if (verified.isEmpty()) {
+                logger.debug("Token JWT invalide ou expiré");
+            } else {
+                JwtPrincipal principal = verified.get();
                 
                 // Créer l'authentification
                 UsernamePasswordAuthenticationToken authToken = 
                     new UsernamePasswordAuthenticationToken(
-                        username, 
+                        principal, 
                         null, 
-                        Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + role))
+                        Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + principal.role()))
                     );
                 
                 // Ajouter les détails de la requête
@@ -68,9 +60,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 SecurityContextHolder.getContext().setAuthentication(authToken);
                 
                 // Ajouter les informations utilisateur dans les attributs de la requête
-                request.setAttribute("userId", userId);
-                request.setAttribute("userRole", role);
-                request.setAttribute("username", username);
+                request.setAttribute("userId", principal.userId());
+                request.setAttribute("userRole", principal.role());
+                request.setAttribute("username", principal.username());
             }
         }
         
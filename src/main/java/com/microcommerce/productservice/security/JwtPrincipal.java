@@ -0,0 +1,20 @@
+package com.microcommerce.productservice.security;
+
+import java.security.Principal;
+import java.time.Instant;
+
+/**
+ * Utilisateur authentifié, tel que lu dans un token JWT vérifié
+ * Immuable : on le construit une seule fois par token (puis il vit dans le cache de JwtUtil)
+ */
+public record JwtPrincipal(String username, String userId, String role, Instant expiresAt) implements Principal {
+    
+    @Override
+    public String getName() {
+        return username;
+    }
+    
+    public boolean isExpired(Instant now) {
+        return expiresAt != null && !now.isBefore(expiresAt);
+    }
+}
@@ -1,17 +1,35 @@
 package com.microcommerce.productservice.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
+import java.util.Optional;
 import java.util.function.Function;
 
 /**
  * Utilitaire JWT pour le Product Service
  * Valide les tokens JWT reçus du User Service
+ * 
+ * La clé HMAC et le parser sont construits une seule fois. Un token vérifié est gardé en cache
+ * (clé = SHA-256 du token, jamais le token lui-même) jusqu'à son expiration : les requêtes
+ * suivantes du même appelant ne refont pas la vérification de signature.
  */
 @Component
 public class JwtUtil {
@@ -19,8 +37,78 @@ public class JwtUtil {
     @Value("${jwt.secret:mySecretKey123456789012345678901234567890}")
     private String secret;
 
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes());
+    @Value("${product.security.token-cache.maximum-size:10000}")
+    private long tokenCacheMaximumSize;
+
+    // Durée max en cache pour un token sans exp
+    @Value("${product.security.token-cache.max-ttl:300}")
+    private long tokenCacheMaxTtlSeconds;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private SecretKey signingKey;
+    private JwtParser parser;
+    private Cache<String, JwtPrincipal> verifiedTokens;
+
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(secret.getBytes());
+        parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(tokenCacheMaximumSize)
+                .expireAfter(new Expiry<String, JwtPrincipal>() {
+                    @Override
+                    public long expireAfterCreate(String key, JwtPrincipal principal, long currentTime) {
+                        return timeToLive(principal).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, JwtPrincipal principal, long currentTime, long currentDuration) {
+                        return timeToLive(principal).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, JwtPrincipal principal, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "jwt.tokens");
+    }
+
+    /**
+     * Vérifie le token (signature + expiration) et en extrait l'utilisateur, en un seul parsing
+     * @return vide si le token est invalide ou expiré
+     */
+    public Optional<JwtPrincipal> verify(String token) {
+        if (token == null || token.isBlank()) {
+            return Optional.empty();
+        }
+        String key = hash(token);
+        JwtPrincipal cached = verifiedTokens.getIfPresent(key);
+        if (cached != null) {
+            // Le cache expire à exp, mais on revérifie : une entrée peut survivre quelques ms de trop
+            return cached.isExpired(Instant.now()) ? Optional.empty() : Optional.of(cached);
+        }
+
+        JwtPrincipal principal;
+        try {
+            // parseClaimsJws vérifie la signature et rejette les tokens expirés
+            principal = toPrincipal(parser.parseClaimsJws(token).getBody());
+        } catch (JwtException | IllegalArgumentException e) {
+            // Pas de cache négatif : un attaquant pourrait le remplir avec des tokens bidons
+            return Optional.empty();
+        }
+        if (principal.username() == null) {
+            return Optional.empty();
+        }
+        verifiedTokens.put(key, principal);
+        return Optional.of(principal);
     }
 
     /**
@@ -49,30 +137,14 @@ public class JwtUtil {
      * Extrait toutes les claims du token
      */
     private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-    }
-
-    /**
-     * Vérifie si le token est expiré
-     */
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+        return parser.parseClaimsJws(token).getBody();
     }
 
     /**
      * Valide le token
      */
     public Boolean validateToken(String token) {
-        try {
-            extractAllClaims(token);
-            return !isTokenExpired(token);
-        } catch (JwtException | IllegalArgumentException e) {
-            return false;
-        }
+        return verify(token).isPresent();
     }
 
     /**
@@ -88,4 +160,37 @@ public class JwtUtil {
     public String extractRole(String token) {
         return extractClaim(token, claims -> claims.get("role", String.class));
     }
-}
\ No newline at end of file
+
+    private JwtPrincipal toPrincipal(Claims claims) {
+        Date expiration = claims.getExpiration();
+        return new JwtPrincipal(
+                claims.getSubject(),
+                claims.get("userId", String.class),
+                claims.get("role", String.class),
+                expiration != null ? expiration.toInstant() : null);
+    }
+
+    /**
+     * Durée de vie en cache : jusqu'à exp, plafonnée par max-ttl
+     */
+    private Duration timeToLive(JwtPrincipal principal) {
+        Duration maxTtl = Duration.ofSeconds(tokenCacheMaxTtlSeconds);
+        if (principal.expiresAt() == null) {
+            return maxTtl;
+        }
+        Duration untilExpiry = Duration.between(Instant.now(), principal.expiresAt());
+        if (untilExpiry.isNegative()) {
+            return Duration.ZERO;
+        }
+        return untilExpiry.compareTo(maxTtl) < 0 ? untilExpiry : maxTtl;
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+}
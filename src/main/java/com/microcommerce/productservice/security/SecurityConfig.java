@@ -3,9 +3,11 @@ package com.microcommerce.productservice.security;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.annotation.web.configuration.WebSecurityCustomizer;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
@@ -55,6 +57,15 @@ public class SecurityConfig {
         return http.build();
     }
 
+    /**
+     * Le catalogue public (/public/**, relatif au context-path) ne passe pas du tout par
+     * la chaîne de sécurité : lecture seule, anonyme, servie depuis la mémoire
+     */
+    @Bean
+    public WebSecurityCustomizer publicCatalogSecurityCustomizer() {
+        return web -> web.ignoring().requestMatchers(HttpMethod.GET, "/public/**");
+    }
+
     /**
      * Configuration CORS
      */
@@ -0,0 +1,86 @@
+package com.microcommerce.productservice.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.microcommerce.productservice.entity.Product;
+import com.microcommerce.productservice.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Export du catalogue complet en NDJSON (un produit JSON par ligne)
+ * 
+ * On lit depuis un curseur Mongo et on écrit directement dans la réponse :
+ * pas de List<Product> en mémoire, donc la conso heap ne dépend pas de la taille du catalogue.
+ * Comme les écritures sont bloquantes, un client lent ralentit la lecture du curseur (backpressure naturelle)
+ */
+@Service
+public class CatalogExportService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(CatalogExportService.class);
+    
+    @Autowired
+    private ProductRepository productRepository;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Value("${product.export.cursor-batch-size:500}")
+    private int cursorBatchSize;
+    
+    @Value("${product.export.flush-every:100}")
+    private int flushEvery;
+    
+    /**
+     * Écrit tout le catalogue dans le flux, éventuellement compressé en gzip
+     * @return le nombre de produits exportés
+     */
+    public long exportCatalog(OutputStream out, boolean gzip) throws IOException {
+        long start = System.currentTimeMillis();
+        // syncFlush pour que chaque flush pousse vraiment les octets compressés vers le client
+        OutputStream target = gzip ? new GZIPOutputStream(out, 8192, true) : out;
+        
+        ObjectWriter writer = objectMapper.writerFor(Product.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        long count = 0;
+        
+        try (Stream<Product> products = productRepository.streamAll(cursorBatchSize);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(target)) {
+            // C'est le conteneur servlet qui ferme la réponse, pas nous
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            
+            Iterator<Product> iterator = products.iterator();
+            while (iterator.hasNext()) {
+                writer.writeValue(generator, iterator.next());
+                generator.writeRaw('\n');
+                count++;
+                
+                // On flush le premier produit tout de suite (time-to-first-byte), puis par paquets
+                if (count == 1 || count % flushEvery == 0) {
+                    generator.flush();
+                }
+            }
+            generator.flush();
+        }
+        
+        if (target instanceof GZIPOutputStream gzipStream) {
+            gzipStream.finish();
+        }
+        target.flush();
+        
+        logger.info("Export NDJSON terminé: {} produits en {} ms (gzip: {})",
+                   count, System.currentTimeMillis() - start, gzip);
+        return count;
+    }
+}
@@ -0,0 +1,232 @@
+package com.microcommerce.productservice.service;
+
+import com.microcommerce.productservice.dto.CatalogStatsDto;
+import com.microcommerce.productservice.entity.Product;
+import com.microcommerce.productservice.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Statistiques du catalogue maintenues au fil de l'eau
+ * 
+ * Au lieu de charger toute la collection à chaque health check, on garde des compteurs
+ * (total, par catégorie, en stock, valeur de l'inventaire) mis à jour à chaque écriture.
+ * Chaque produit garde sa "contribution" pour pouvoir la retirer proprement quand il change.
+ * Une réconciliation périodique recalcule tout depuis MongoDB, au cas où une écriture
+ * nous aurait échappé (autre instance, modif directe en base...)
+ */
+@Component
+public class CatalogStatistics implements ProductChangeListener {
+    
+    private static final Logger logger = LoggerFactory.getLogger(CatalogStatistics.class);
+    
+    static final String UNCATEGORIZED = "(sans catégorie)";
+    
+    private static final int RECONCILE_BATCH_SIZE = 1000;
+    
+    @Autowired
+    private ProductRepository productRepository;
+    
+    // Ce que chaque produit apporte aux compteurs, indexé par ID
+    private final Map<String, Contribution> contributions = new HashMap<>();
+    private final Map<String, CategoryCounters> categories = new HashMap<>();
+    private long inStockCount;
+    private BigDecimal inventoryValue = BigDecimal.ZERO;
+    
+    // Lu sans verrou par le health check
+    private volatile long totalCount;
+    private volatile LocalDateTime lastReconciledAt;
+    
+    // Non null pendant une réconciliation : les écritures arrivées entre-temps (null = suppression)
+    private Map<String, Contribution> changedDuringReconcile;
+    
+    @Override
+    public synchronized void onProductSaved(Product current) {
+        Contribution contribution = Contribution.of(current);
+        apply(current.getId(), contribution);
+        if (changedDuringReconcile != null) {
+            changedDuringReconcile.put(current.getId(), contribution);
+        }
+    }
+    
+    @Override
+    public synchronized void onProductDeleted(String productId) {
+        apply(productId, null);
+        if (changedDuringReconcile != null) {
+            changedDuringReconcile.put(productId, null);
+        }
+    }
+    
+    /**
+     * true une fois la première réconciliation faite (avant, les compteurs sont vides)
+     */
+    public boolean isReady() {
+        return lastReconciledAt != null;
+    }
+    
+    /**
+     * Passe chaque produit connu au consumer (ID, catégorie ou null, stock)
+     * Sert à construire les vues en mémoire sans refaire un scan MongoDB
+     */
+    public synchronized void forEachProduct(ProductFacts consumer) {
+        contributions.forEach((id, contribution) -> consumer.accept(id,
+                UNCATEGORIZED.equals(contribution.category()) ? null : contribution.category(), contribution.stock()));
+    }
+    
+    @FunctionalInterface
+    public interface ProductFacts {
+        void accept(String productId, String category, int stock);
+    }
+    
+    /**
+     * Nombre total de produits - O(1), sans verrou
+     */
+    public long getTotalCount() {
+        return totalCount;
+    }
+    
+    /**
+     * Nombre de produits d'une catégorie
+     */
+    public synchronized long getCountByCategory(String category) {
+        CategoryCounters counters = categories.get(categoryKey(category));
+        return counters != null ? counters.count : 0;
+    }
+    
+    /**
+     * Photo des stats actuelles (taille proportionnelle au nombre de catégories, pas de produits)
+     */
+    public synchronized CatalogStatsDto snapshot() {
+        Map<String, CatalogStatsDto.CategoryStats> byCategory = new TreeMap<>();
+        categories.forEach((category, counters) -> byCategory.put(category,
+                new CatalogStatsDto.CategoryStats(counters.count, counters.inStock, counters.inventoryValue)));
+        return new CatalogStatsDto(totalCount, inStockCount, inventoryValue, byCategory, lastReconciledAt);
+    }
+    
+    // Avant CatalogColumns, qui reprend les catégories et stocks d'ici
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void initialize() {
+        reconcile();
+    }
+    
+    /**
+     * Recalcule tout depuis MongoDB et remplace les compteurs
+     * Le scan se fait sans verrou ; les écritures qui arrivent pendant ce temps sont rejouées à la fin
+     */
+    @Scheduled(fixedDelayString = "${product.stats.reconcile-interval-ms:300000}",
+               initialDelayString = "${product.stats.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        synchronized (this) {
+            if (changedDuringReconcile != null) {
+                return; // déjà en cours
+            }
+            changedDuringReconcile = new HashMap<>();
+        }
+        
+        Map<String, Contribution> fresh = new HashMap<>();
+        try (Stream<Product> products = productRepository.streamAll(RECONCILE_BATCH_SIZE)) {
+            products.forEach(product -> fresh.put(product.getId(), Contribution.of(product)));
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                changedDuringReconcile = null;
+            }
+            logger.error("Échec de la réconciliation des statistiques du catalogue", e);
+            return;
+        }
+        
+        synchronized (this) {
+            changedDuringReconcile.forEach((id, contribution) -> {
+                if (contribution == null) {
+                    fresh.remove(id);
+                } else {
+                    fresh.put(id, contribution);
+                }
+            });
+            changedDuringReconcile = null;
+            
+            long previousTotal = totalCount;
+            contributions.clear();
+            categories.clear();
+            inStockCount = 0;
+            inventoryValue = BigDecimal.ZERO;
+            totalCount = 0;
+            fresh.forEach(this::apply);
+            lastReconciledAt = LocalDateTime.now();
+            
+            if (previousTotal != totalCount) {
+                logger.info("Statistiques du catalogue réconciliées: {} -> {} produits", previousTotal, totalCount);
+            } else {
+                logger.debug("Statistiques du catalogue réconciliées: {} produits", totalCount);
+            }
+        }
+    }
+    
+    /**
+     * Retire l'ancienne contribution du produit et ajoute la nouvelle (null = produit supprimé)
+     */
+    private void apply(String productId, Contribution contribution) {
+        Contribution previous = contribution != null
+                ? contributions.put(productId, contribution)
+                : contributions.remove(productId);
+        if (previous != null) {
+            add(previous, -1);
+        }
+        if (contribution != null) {
+            add(contribution, 1);
+        }
+        totalCount = contributions.size();
+    }
+    
+    private void add(Contribution contribution, int sign) {
+        CategoryCounters counters = categories.computeIfAbsent(contribution.category(), key -> new CategoryCounters());
+        BigDecimal value = sign > 0 ? contribution.valuation() : contribution.valuation().negate();
+        int inStock = contribution.stock() > 0 ? sign : 0;
+        
+        counters.count += sign;
+        counters.inStock += inStock;
+        counters.inventoryValue = counters.inventoryValue.add(value);
+        inStockCount += inStock;
+        inventoryValue = inventoryValue.add(value);
+        
+        if (counters.count == 0) {
+            categories.remove(contribution.category());
+        }
+    }
+    
+    private static String categoryKey(String category) {
+        return category != null ? category : UNCATEGORIZED;
+    }
+    
+    /**
+     * Ce qu'un produit apporte aux compteurs
+     */
+    private record Contribution(String category, int stock, BigDecimal valuation) {
+        
+        static Contribution of(Product product) {
+            int stock = product.getStock() != null ? product.getStock() : 0;
+            BigDecimal price = product.getPrice() != null ? product.getPrice() : BigDecimal.ZERO;
+            return new Contribution(categoryKey(product.getCategory()), stock, price.multiply(BigDecimal.valueOf(stock)));
+        }
+    }
+    
+    private static final class CategoryCounters {
+        private long count;
+        private long inStock;
+        private BigDecimal inventoryValue = BigDecimal.ZERO;
+    }
+}
@@ -0,0 +1,172 @@
+package com.microcommerce.productservice.service;
+
+import com.microcommerce.productservice.entity.Product;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Numéros de version du catalogue pour les GET conditionnels (ETag / If-None-Match)
+ * 
+ * Une version globale et une version par catégorie, incrémentées à chaque écriture
+ * (ProductService ou stock modifié par une commande). Les ETags incluent l'époque de démarrage
+ * de l'instance, pour qu'un compteur qui repart de zéro après un restart ne donne jamais un faux 304.
+ * 
+ * Chaque version = compteur local (écritures de cette instance, visible tout de suite)
+ * + compteur partagé dans la collection catalog_versions (écritures de toutes les instances,
+ * relu toutes les product.catalog-versions.refresh-ms). Les deux ne font que monter, donc la
+ * somme change à chaque écriture : une écriture faite sur une autre instance (ou une commande
+ * consommée ailleurs) change les ETags d'ici au plus tard au rafraîchissement suivant.
+ */
+@Component
+public class CatalogVersions implements ProductChangeListener {
+    
+    private static final Logger logger = LoggerFactory.getLogger(CatalogVersions.class);
+    
+    static final String COLLECTION = "catalog_versions";
+    private static final String GLOBAL = "global";
+    private static final String UNKNOWN_ORIGIN = "unknown-origin";
+    private static final String CATEGORY_PREFIX = "category:";
+    private static final String VERSION = "version";
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    
+    private final AtomicLong globalVersion = new AtomicLong();
+    private final Map<String, AtomicLong> categoryVersions = new ConcurrentHashMap<>();
+    // Catégorie actuelle de chaque produit déjà vu, pour savoir quelle catégorie il quitte quand il change
+    private final Map<String, String> categoryByProduct = new ConcurrentHashMap<>();
+    // Écritures sur un produit pas encore vu depuis le démarrage : on ne sait pas quelle catégorie
+    // il quitte, donc ce compteur fait partie de l'ETag de toutes les catégories
+    private final AtomicLong unknownOriginVersion = new AtomicLong();
+    
+    // Dernière lecture des compteurs partagés (_id du document -> version), remplacée d'un coup
+    private volatile Map<String, Long> shared = Map.of();
+    
+    private static final String NO_CATEGORY = "";
+    
+    @Override
+    public void onProductSaved(Product current) {
+        String category = current.getCategory() != null ? current.getCategory() : NO_CATEGORY;
+        String previous = categoryByProduct.put(current.getId(), category);
+        
+        Set<String> bumped = new LinkedHashSet<>();
+        bumpCategory(category, bumped);
+        if (previous == null) {
+            unknownOriginVersion.incrementAndGet();
+            bumped.add(UNKNOWN_ORIGIN);
+        } else if (!previous.equals(category)) {
+            bumpCategory(previous, bumped);
+        }
+        globalVersion.incrementAndGet();
+        bumped.add(GLOBAL);
+        bumpShared(bumped);
+    }
+    
+    @Override
+    public void onProductDeleted(String productId) {
+        String previous = categoryByProduct.remove(productId);
+        Set<String> bumped = new LinkedHashSet<>();
+        if (previous == null) {
+            unknownOriginVersion.incrementAndGet();
+            bumped.add(UNKNOWN_ORIGIN);
+        } else {
+            bumpCategory(previous, bumped);
+        }
+        globalVersion.incrementAndGet();
+        bumped.add(GLOBAL);
+        bumpShared(bumped);
+    }
+    
+    /**
+     * Relit les compteurs partagés (quelques petits documents : un global, un par catégorie)
+     */
+    @Scheduled(fixedDelayString = "${product.catalog-versions.refresh-ms:1000}")
+    public void refresh() {
+        try {
+            Map<String, Long> read = new HashMap<>();
+            for (Document document : mongoTemplate.findAll(Document.class, COLLECTION)) {
+                Number version = document.get(VERSION, Number.class);
+                read.put(document.getString("_id"), version != null ? version.longValue() : 0);
+            }
+            shared = read;
+        } catch (Exception e) {
+            logger.warn("Lecture des versions partagées du catalogue impossible, on garde les précédentes: {}", e.getMessage());
+        }
+    }
+    
+    public long getGlobalVersion() {
+        return globalVersion.get() + shared(GLOBAL);
+    }
+    
+    public long getCategoryVersion(String category) {
+        AtomicLong version = categoryVersions.get(category);
+        return (version != null ? version.get() : 0) + shared(CATEGORY_PREFIX + category);
+    }
+    
+    /**
+     * Compteur des écritures sur des produits pas encore vus (on ne sait pas quelle catégorie ils quittent) :
+     * tout ce qui dépend d'une catégorie doit aussi en dépendre
+     */
+    public long getUnknownOriginVersion() {
+        return unknownOriginVersion.get() + shared(UNKNOWN_ORIGIN);
+    }
+    
+    /**
+     * ETag fort valable pour tout ce qui dépend de l'ensemble du catalogue
+     */
+    public String catalogETag() {
+        return "\"" + epoch + "-" + getGlobalVersion() + "\"";
+    }
+    
+    /**
+     * ETag fort valable pour ce qui ne dépend que d'une catégorie
+     */
+    public String categoryETag(String category) {
+        return "\"" + epoch + "-c" + getCategoryVersion(category) + "." + getUnknownOriginVersion() + "\"";
+    }
+    
+    private void bumpCategory(String category, Set<String> bumped) {
+        categoryVersions.computeIfAbsent(category, key -> new AtomicLong()).incrementAndGet();
+        bumped.add(CATEGORY_PREFIX + category);
+    }
+    
+    /**
+     * Incrémente les compteurs partagés touchés par une écriture (un seul aller-retour).
+     * En cas d'échec le compteur local a quand même bougé : seules les autres instances
+     * ne verront pas cette écriture (jusqu'à la suivante sur les mêmes compteurs)
+     */
+    private void bumpShared(Set<String> ids) {
+        try {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, COLLECTION);
+            for (String id : ids) {
+                bulk.upsert(new Query(Criteria.where("_id").is(id)), new Update().inc(VERSION, 1));
+            }
+            bulk.execute();
+        } catch (Exception e) {
+            logger.warn("Incrément des versions partagées du catalogue impossible ({}): {}", ids, e.getMessage());
+        }
+    }
+    
+    private long shared(String id) {
+        Long version = shared.get(id);
+        return version != null ? version : 0;
+    }
+}
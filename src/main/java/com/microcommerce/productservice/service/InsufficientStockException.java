@@ -0,0 +1,24 @@
+package com.microcommerce.productservice.service;
+
+/**
+ * Levée quand on essaie de retirer plus de stock qu'il n'y en a (avec la garde activée)
+ */
+public class InsufficientStockException extends RuntimeException {
+    
+    private final String productId;
+    private final int requested;
+    
+    public InsufficientStockException(String productId, int requested) {
+        super("Stock insuffisant pour le produit " + productId + " (demandé: " + requested + ")");
+        this.productId = productId;
+        this.requested = requested;
+    }
+    
+    public String getProductId() {
+        return productId;
+    }
+    
+    public int getRequested() {
+        return requested;
+    }
+}
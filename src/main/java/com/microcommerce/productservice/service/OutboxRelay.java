@@ -0,0 +1,293 @@
+package com.microcommerce.productservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.microcommerce.productservice.entity.OutboxEvent;
+import com.microcommerce.productservice.event.ProductEvent;
+import com.microcommerce.productservice.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.AmqpTimeoutException;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.ConnectException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Relais de l'outbox : envoie vers RabbitMQ les événements déposés par ProductEventPublisher
+ * 
+ * À chaque passage on prend les plus anciens événements (par lots), on les publie sur un
+ * même channel et on attend les confirms du broker avant de les supprimer de l'outbox.
+ * Si le broker ne confirme pas, le lot reste en place et sera renvoyé au passage suivant
+ * (livraison "au moins une fois", les consommateurs doivent tolérer les doublons).
+ * 
+ * Ordre : l'_id (ObjectId) suit l'ordre d'écriture dans un processus, pas l'ordre des commits,
+ * et pas du tout entre deux instances. Ce qui compte pour les consommateurs, c'est l'ordre
+ * par produit : il est donné par la version du produit, incrémentée dans la même transaction.
+ * Dans chaque lot on publie donc les événements d'un produit par version croissante, et si
+ * une version manque (transaction pas encore commitée, ou écrite par une autre instance),
+ * les événements suivants de ce produit attendent, au plus product.outbox.settle-ms.
+ * 
+ * Un lot en échec pour une autre raison qu'un broker injoignable est renvoyé événement
+ * par événement : celui qui échoue encore après product.outbox.max-attempts essais est mis
+ * de côté (parked=true, gardé dans la collection pour analyse) et le relais passe à la suite.
+ * 
+ * Avec product.events.coalesce.enabled=true, les UPDATED d'un même produit sont regroupés
+ * à l'intérieur de chaque lot (tous les événements du lot sont supprimés quand même).
+ * 
+ * Un seul relais doit tourner à la fois : avec plusieurs instances, mettre
+ * product.outbox.relay-enabled=false partout sauf sur l'une d'elles.
+ */
+@Component
+@ConditionalOnProperty(name = {"product.outbox.enabled", "product.outbox.relay-enabled"}, havingValue = "true")
+public class OutboxRelay {
+    
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+    
+    // Ordre de publication dans un lot : par produit, versions croissantes, suppression (sans version) en dernier
+    private static final Comparator<OutboxEvent> PRODUCT_ORDER = Comparator
+            .comparing((OutboxEvent outboxEvent) -> outboxEvent.getEvent().getProductId(),
+                    Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(outboxEvent -> outboxEvent.getEvent().getVersion(),
+                    Comparator.nullsLast(Comparator.naturalOrder()));
+    
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+    
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${product.outbox.batch-size:100}")
+    private int batchSize;
+    
+    @Value("${product.outbox.max-batches-per-poll:10}")
+    private int maxBatchesPerPoll;
+    
+    @Value("${product.outbox.confirm-timeout-ms:5000}")
+    private long confirmTimeoutMs;
+    
+    @Value("${product.outbox.max-attempts:10}")
+    private int maxAttempts;
+    
+    @Value("${product.outbox.settle-ms:5000}")
+    private long settleMs;
+    
+    @Value("${product.events.coalesce.enabled:false}")
+    private boolean coalesceEnabled;
+    
+    // Dernière version publiée par produit, pour repérer les trous d'un lot à l'autre
+    private final Cache<String, Long> lastPublishedVersions = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterAccess(Duration.ofHours(1))
+            .build();
+    
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong parked = new AtomicLong();
+    private final AtomicLong oldestAgeMs = new AtomicLong();
+    private Counter publishedCounter;
+    private Counter failedBatchCounter;
+    private Counter heldCounter;
+    private Counter parkedCounter;
+    private Timer batchTimer;
+    
+    @PostConstruct
+    public void initMetrics() {
+        meterRegistry.gauge("product.outbox.pending", pending);
+        meterRegistry.gauge("product.outbox.parked", parked);
+        meterRegistry.gauge("product.outbox.lag.ms", oldestAgeMs);
+        publishedCounter = meterRegistry.counter("product.outbox.published");
+        failedBatchCounter = meterRegistry.counter("product.outbox.failed.batches");
+        heldCounter = meterRegistry.counter("product.outbox.held");
+        parkedCounter = meterRegistry.counter("product.outbox.parked.events");
+        batchTimer = meterRegistry.timer("product.outbox.batch");
+        logger.info("Relais outbox démarré (lots de {}, timeout confirms: {}ms, {} essais max par événement)",
+                   batchSize, confirmTimeoutMs, maxAttempts);
+    }
+    
+    @Scheduled(fixedDelayString = "${product.outbox.poll-interval-ms:500}")
+    public void relay() {
+        try {
+            for (int i = 0; i < maxBatchesPerPoll; i++) {
+                List<OutboxEvent> batch = outboxEventRepository.findByParkedNotOrderByIdAsc(true, PageRequest.of(0, batchSize));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                Map<String, Long> versions = new HashMap<>();
+                List<OutboxEvent> ready = inProductOrder(batch, versions);
+                if (ready.isEmpty() || !publishBatch(ready, versions)) {
+                    break;
+                }
+                // Des événements attendent une version manquante : on les reprendra au prochain passage
+                if (ready.size() < batch.size() || batch.size() < batchSize) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Erreur dans le relais outbox", e);
+        } finally {
+            refreshLag();
+        }
+    }
+    
+    /**
+     * Événements du lot publiables maintenant, dans l'ordre des versions de chaque produit.
+     * Remplit versions avec la dernière version publiée par produit si le lot passe
+     */
+    private List<OutboxEvent> inProductOrder(List<OutboxEvent> batch, Map<String, Long> versions) {
+        List<OutboxEvent> sorted = new ArrayList<>(batch);
+        sorted.sort(PRODUCT_ORDER);
+        
+        List<OutboxEvent> ready = new ArrayList<>(sorted.size());
+        Set<String> held = new HashSet<>();
+        for (OutboxEvent outboxEvent : sorted) {
+            ProductEvent event = outboxEvent.getEvent();
+            String productId = event.getProductId();
+            if (productId != null && held.contains(productId)) {
+                continue;
+            }
+            Long version = event.getVersion();
+            if (productId == null || version == null) {
+                ready.add(outboxEvent);
+                continue;
+            }
+            Long last = versions.containsKey(productId) ? versions.get(productId) : lastPublishedVersions.getIfPresent(productId);
+            boolean gap = last != null && version > last + 1;
+            if (gap && ageMs(outboxEvent) < settleMs) {
+                held.add(productId);
+                heldCounter.increment();
+                logger.debug("Événement {} du produit {} retenu: version {} après {}, on attend la précédente",
+                            outboxEvent.getId(), productId, version, last);
+                continue;
+            }
+            ready.add(outboxEvent);
+            versions.put(productId, last != null ? Math.max(last, version) : version);
+        }
+        return ready;
+    }
+    
+    /**
+     * Publie un lot et attend les confirms. Renvoie false si le relais doit s'arrêter pour ce passage
+     */
+    private boolean publishBatch(List<OutboxEvent> batch, Map<String, Long> versions) {
+        long start = System.nanoTime();
+        List<String> ids = batch.stream().map(OutboxEvent::getId).toList();
+        List<OutboxEvent> toSend = coalesceEnabled
+                ? ProductEventCoalescer.coalesce(batch, OutboxEvent::getEvent, OutboxEvent::isSnapshot)
+                : batch;
+        try {
+            send(toSend);
+        } catch (Exception e) {
+            failedBatchCounter.increment();
+            if (isBrokerUnavailable(e)) {
+                outboxEventRepository.markFailed(ids, e.getMessage());
+                logger.warn("Lot de {} événements non confirmé par RabbitMQ, nouvel essai au prochain passage: {}",
+                           batch.size(), e.getMessage());
+                return false;
+            }
+            logger.warn("Lot de {} événements en échec ({}), renvoi un par un", batch.size(), e.getMessage());
+            return publishOneByOne(batch);
+        }
+        
+        outboxEventRepository.deleteAllById(ids);
+        lastPublishedVersions.putAll(versions);
+        publishedCounter.increment(toSend.size());
+        batchTimer.record(Duration.ofNanos(System.nanoTime() - start));
+        logger.debug("{} événements de l'outbox publiés ({} dans le lot)", toSend.size(), batch.size());
+        return true;
+    }
+    
+    /**
+     * Renvoie les événements un par un pour trouver celui qui bloque, et le met de côté
+     * s'il a épuisé ses essais
+     */
+    private boolean publishOneByOne(List<OutboxEvent> events) {
+        for (OutboxEvent outboxEvent : events) {
+            try {
+                send(List.of(outboxEvent));
+            } catch (Exception e) {
+                if (isBrokerUnavailable(e) || outboxEvent.getAttempts() + 1 < maxAttempts) {
+                    outboxEventRepository.markFailed(List.of(outboxEvent.getId()), e.getMessage());
+                    return false;
+                }
+                outboxEventRepository.park(outboxEvent.getId(), e.getMessage());
+                parkedCounter.increment();
+                logger.error("Événement {} mis de côté après {} essais, le relais continue sans lui: {}",
+                            outboxEvent, maxAttempts, e.getMessage());
+                continue;
+            }
+            outboxEventRepository.deleteById(outboxEvent.getId());
+            publishedCounter.increment();
+            ProductEvent event = outboxEvent.getEvent();
+            if (event.getProductId() != null && event.getVersion() != null) {
+                lastPublishedVersions.asMap().merge(event.getProductId(), event.getVersion(), Math::max);
+            }
+        }
+        return true;
+    }
+    
+    private void send(List<OutboxEvent> events) {
+        rabbitTemplate.invoke(operations -> {
+            for (OutboxEvent outboxEvent : events) {
+                operations.convertAndSend(outboxEvent.getExchange(), outboxEvent.getRoutingKey(), outboxEvent.getEvent());
+            }
+            operations.waitForConfirmsOrDie(confirmTimeoutMs);
+            return null;
+        });
+    }
+    
+    /**
+     * Broker injoignable ou trop lent : pas la faute des événements, on ne compte pas contre eux
+     */
+    private static boolean isBrokerUnavailable(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof AmqpConnectException || cause instanceof AmqpTimeoutException
+                    || cause instanceof TimeoutException || cause instanceof ConnectException) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static long ageMs(OutboxEvent outboxEvent) {
+        return outboxEvent.getCreatedAt() != null
+                ? Duration.between(outboxEvent.getCreatedAt(), LocalDateTime.now()).toMillis()
+                : Long.MAX_VALUE;
+    }
+    
+    private void refreshLag() {
+        try {
+            pending.set(outboxEventRepository.countByParkedNot(true));
+            parked.set(outboxEventRepository.countByParked(true));
+            long age = outboxEventRepository.findFirstByParkedNotOrderByIdAsc(true)
+                    .map(OutboxRelay::ageMs)
+                    .orElse(0L);
+            oldestAgeMs.set(Math.max(0, age));
+        } catch (Exception e) {
+            logger.warn("Impossible de mesurer le retard de l'outbox: {}", e.getMessage());
+        }
+    }
+}
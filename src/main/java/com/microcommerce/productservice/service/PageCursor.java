@@ -0,0 +1,64 @@
+package com.microcommerce.productservice.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Encodage/décodage des curseurs de pagination
+ * 
+ * Le curseur contient juste le dernier _id renvoyé, encodé en base64 url-safe
+ * pour que les clients ne soient pas tentés de le fabriquer eux-mêmes
+ */
+final class PageCursor {
+    
+    private static final String PREFIX = "v1:";
+    
+    private PageCursor() {
+    }
+    
+    static String encode(String lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Curseur de la pagination par prix : (prix en centimes, id) du dernier produit renvoyé
+     */
+    static String encodePriced(long cents, String lastId) {
+        return encode(cents + ":" + lastId);
+    }
+    
+    /**
+     * {centimes, id} d'un curseur encodePriced, null si pas de curseur
+     */
+    static Object[] decodePriced(String cursor) {
+        String decoded = decode(cursor);
+        if (decoded == null) {
+            return null;
+        }
+        int separator = decoded.indexOf(':');
+        try {
+            if (separator <= 0 || separator == decoded.length() - 1) {
+                throw new NumberFormatException();
+            }
+            return new Object[] {Long.parseLong(decoded.substring(0, separator)), decoded.substring(separator + 1)};
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Curseur invalide: " + cursor);
+        }
+    }
+    
+    static String decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!decoded.startsWith(PREFIX) || decoded.length() == PREFIX.length()) {
+                throw new IllegalArgumentException("Curseur invalide");
+            }
+            return decoded.substring(PREFIX.length());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Curseur invalide: " + cursor);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.microcommerce.productservice.service;
+
+import com.microcommerce.productservice.entity.Product;
+
+/**
+ * À implémenter par tout ce qui garde une vue en mémoire du catalogue (cache, stats...)
+ * 
+ * Appelé de façon synchrone par ProductChangeNotifier juste après chaque écriture en base,
+ * que ce soit depuis ProductService ou depuis les événements commandes
+ */
+public interface ProductChangeListener {
+    
+    /**
+     * Un produit vient d'être créé ou modifié (current = état tel qu'enregistré en base)
+     */
+    void onProductSaved(Product current);
+    
+    /**
+     * Un produit vient d'être supprimé
+     */
+    void onProductDeleted(String productId);
+}
@@ -0,0 +1,73 @@
+package com.microcommerce.productservice.service;
+
+import com.microcommerce.productservice.entity.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+/**
+ * Diffuse les écritures sur les produits à tous les ProductChangeListener
+ * 
+ * Un listener qui plante ne doit pas faire échouer l'écriture (déjà faite en base),
+ * donc on log et on passe au suivant.
+ * 
+ * Si l'écriture se fait dans une transaction MongoDB (mode outbox), on attend le commit :
+ * sinon un lecteur pourrait recharger l'ancienne version dans le cache entre l'invalidation
+ * et le commit, et les index verraient des écritures qui finissent annulées
+ */
+@Component
+public class ProductChangeNotifier {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ProductChangeNotifier.class);
+    
+    @Autowired
+    private List<ProductChangeListener> listeners;
+    
+    public void productSaved(Product product) {
+        afterCommit(() -> dispatchSaved(product));
+    }
+    
+    public void productDeleted(String productId) {
+        afterCommit(() -> dispatchDeleted(productId));
+    }
+    
+    private void afterCommit(Runnable dispatch) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            dispatch.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                dispatch.run();
+            }
+        });
+    }
+    
+    private void dispatchSaved(Product product) {
+        for (ProductChangeListener listener : listeners) {
+            try {
+                listener.onProductSaved(product);
+            } catch (Exception e) {
+                logger.error("Erreur dans {} après l'enregistrement du produit {}",
+                            listener.getClass().getSimpleName(), product.getId(), e);
+            }
+        }
+    }
+    
+    private void dispatchDeleted(String productId) {
+        for (ProductChangeListener listener : listeners) {
+            try {
+                listener.onProductDeleted(productId);
+            } catch (Exception e) {
+                logger.error("Erreur dans {} après la suppression du produit {}",
+                            listener.getClass().getSimpleName(), productId, e);
+            }
+        }
+    }
+}
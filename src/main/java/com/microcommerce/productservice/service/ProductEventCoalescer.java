@@ -0,0 +1,208 @@
+package com.microcommerce.productservice.service;
+
+import com.microcommerce.productservice.event.ProductEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Regroupe les PRODUCT_UPDATED d'un même produit sur une courte fenêtre
+ * 
+ * Pendant window-ms après la première mise à jour d'un produit, les suivantes remplacent
+ * la précédente : on n'envoie que le dernier état, avec mergedCount = nombre de mises à jour
+ * (en format delta, les champs modifiés des deltas fusionnés sont cumulés).
+ * "Dernier" = plus grande version, pas dernier arrivé : deux écritures concurrentes peuvent
+ * être soumises dans le désordre, et c'est toujours l'event de plus grande version qui part.
+ * Un snapshot (publishProductSnapshot) ne compte pas dans mergedCount : ce n'est pas une
+ * écriture, et le compter casserait le contrôle version - mergedCount du consommateur.
+ * Les autres types (CREATED, DELETED) partent tout de suite, après avoir vidé l'éventuel
+ * UPDATED en attente du même produit.
+ * 
+ * Tous les envois passent par un seul thread, dans l'ordre où ils ont été décidés :
+ * un UPDATED retenu ne peut donc jamais doubler le DELETED du même produit.
+ */
+class ProductEventCoalescer {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ProductEventCoalescer.class);
+    
+    private final long windowNanos;
+    private final BiConsumer<ProductEvent, String> sender;
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sendThread;
+    private final AtomicLong mergedUpdates = new AtomicLong();
+    
+    ProductEventCoalescer(long windowMs, BiConsumer<ProductEvent, String> sender) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.sender = sender;
+        this.sendThread = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "product-event-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long tickMs = Math.max(10, windowMs / 4);
+        sendThread.scheduleWithFixedDelay(this::flushDue, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Retient un UPDATED, ou envoie tout de suite les autres types d'événements
+     */
+    void submit(ProductEvent event, String routingKey) {
+        submit(event, routingKey, false);
+    }
+    
+    /**
+     * Comme submit, snapshot = état complet republié à la demande (ne compte pas comme une mise à jour)
+     */
+    void submit(ProductEvent event, String routingKey, boolean snapshot) {
+        String productId = event.getProductId();
+        if (event.getEventType() == ProductEvent.EventType.UPDATED) {
+            pending.merge(productId, new Pending(event, routingKey, snapshot ? 0 : 1, System.nanoTime()), Pending::absorb);
+            return;
+        }
+        
+        Pending held = pending.remove(productId);
+        sendThread.execute(() -> {
+            if (held != null) {
+                send(held);
+            }
+            sender.accept(event, routingKey);
+        });
+    }
+    
+    /**
+     * Nombre de produits qui ont un UPDATED en attente
+     */
+    int pendingCount() {
+        return pending.size();
+    }
+    
+    /**
+     * Nombre total de mises à jour absorbées (non envoyées car remplacées par une plus récente)
+     */
+    long mergedUpdates() {
+        return mergedUpdates.get();
+    }
+    
+    /**
+     * Envoie tout ce qui est en attente puis arrête le thread d'envoi
+     */
+    void shutdown() {
+        sendThread.execute(() -> {
+            for (String productId : new ArrayList<>(pending.keySet())) {
+                Pending held = pending.remove(productId);
+                if (held != null) {
+                    send(held);
+                }
+            }
+        });
+        sendThread.shutdown();
+        try {
+            if (!sendThread.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.warn("{} événements regroupés non envoyés à l'arrêt", pending.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Regroupe les UPDATED d'un lot (utilisé par le relais outbox) : chaque UPDATED prend
+     * la place du précédent UPDATED du même produit, tant qu'aucun autre type d'événement
+     * de ce produit n'est passé entre les deux. Les snapshots ne comptent pas dans mergedCount
+     */
+    static <T> List<T> coalesce(List<T> items, Function<T, ProductEvent> eventOf, Predicate<T> isSnapshot) {
+        List<T> result = new ArrayList<>(items.size());
+        List<Integer> counts = new ArrayList<>(items.size());
+        Map<String, Integer> lastUpdateIndex = new HashMap<>();
+        for (T item : items) {
+            ProductEvent event = eventOf.apply(item);
+            String productId = event.getProductId();
+            int count = isSnapshot.test(item) ? 0 : 1;
+            if (event.getEventType() != ProductEvent.EventType.UPDATED) {
+                lastUpdateIndex.remove(productId);
+                result.add(item);
+                counts.add(count);
+                continue;
+            }
+            Integer index = lastUpdateIndex.get(productId);
+            if (index == null) {
+                lastUpdateIndex.put(productId, result.size());
+                result.add(item);
+                counts.add(count);
+                continue;
+            }
+            T previous = result.get(index);
+            T kept = isNewer(event, eventOf.apply(previous)) ? item : previous;
+            ProductEvent keptEvent = eventOf.apply(kept);
+            ProductEventDeltas.merge(kept == item ? eventOf.apply(previous) : event, keptEvent);
+            int merged = counts.get(index) + count;
+            keptEvent.setMergedCount(merged > 1 ? merged : null);
+            result.set(index, kept);
+            counts.set(index, merged);
+        }
+        return result;
+    }
+    
+    /**
+     * candidate remplace current s'il a une version plus grande, ou à version égale / inconnue
+     * s'il est arrivé après (même état, ou pas de quoi les départager)
+     */
+    static boolean isNewer(ProductEvent candidate, ProductEvent current) {
+        if (candidate.getVersion() == null || current.getVersion() == null) {
+            return true;
+        }
+        return candidate.getVersion() >= current.getVersion();
+    }
+    
+    private void flushDue() {
+        long now = System.nanoTime();
+        for (Map.Entry<String, Pending> entry : pending.entrySet()) {
+            Pending held = entry.getValue();
+            // remove(key, value) : si un DELETED vient de le retirer, on ne l'envoie pas en double
+            if (now - held.firstAt() >= windowNanos && pending.remove(entry.getKey(), held)) {
+                send(held);
+            }
+        }
+    }
+    
+    private void send(Pending held) {
+        if (held.count() > 1) {
+            held.event().setMergedCount(held.count());
+            mergedUpdates.addAndGet(held.count() - 1);
+        }
+        try {
+            sender.accept(held.event(), held.routingKey());
+        } catch (Exception e) {
+            logger.error("Erreur lors de l'envoi de l'événement regroupé: {}", held.event(), e);
+        }
+    }
+    
+    /**
+     * Dernier UPDATED connu d'un produit, avec le nombre de mises à jour qu'il remplace
+     * et le début de la fenêtre (qui ne bouge pas : un produit très actif part quand même
+     * au bout de window-ms)
+     */
+    private record Pending(ProductEvent event, String routingKey, int count, long firstAt) {
+        
+        Pending absorb(Pending arrived) {
+            // On garde la plus grande version comme base, et en format delta elle récupère
+            // les champs modifiés par l'autre (qui est forcément plus ancienne)
+            ProductEvent merged = isNewer(arrived.event, event)
+                    ? ProductEventDeltas.merge(event, arrived.event)
+                    : ProductEventDeltas.merge(arrived.event, event);
+            return new Pending(merged, routingKey, count + arrived.count, firstAt);
+        }
+    }
+}
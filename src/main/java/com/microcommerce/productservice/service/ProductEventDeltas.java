@@ -0,0 +1,101 @@
+package com.microcommerce.productservice.service;
+
+import com.microcommerce.productservice.entity.Product;
+import com.microcommerce.productservice.event.ProductEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Petits utilitaires pour les PRODUCT_UPDATED en format delta
+ * (champs modifiés d'une écriture, fusion de deux deltas successifs)
+ */
+final class ProductEventDeltas {
+    
+    // Champs d'un produit qui peuvent apparaître dans changedFields
+    static final List<String> FIELDS = List.of("name", "description", "price", "stock", "category");
+    
+    static final Set<String> STOCK_ONLY = Set.of("stock");
+    
+    private ProductEventDeltas() {
+    }
+    
+    /**
+     * Champs dont la valeur diffère entre deux états d'un produit
+     */
+    static Set<String> changedFields(Product before, Product after) {
+        Set<String> changed = new LinkedHashSet<>();
+        if (!Objects.equals(before.getName(), after.getName())) {
+            changed.add("name");
+        }
+        if (!Objects.equals(before.getDescription(), after.getDescription())) {
+            changed.add("description");
+        }
+        // compareTo et pas equals : 10.0 et 10.00 sont le même prix
+        if (before.getPrice() == null || after.getPrice() == null
+                ? before.getPrice() != after.getPrice()
+                : before.getPrice().compareTo(after.getPrice()) != 0) {
+            changed.add("price");
+        }
+        if (!Objects.equals(before.getStock(), after.getStock())) {
+            changed.add("stock");
+        }
+        if (!Objects.equals(before.getCategory(), after.getCategory())) {
+            changed.add("category");
+        }
+        return changed;
+    }
+    
+    static void copyField(String field, Product from, ProductEvent to) {
+        switch (field) {
+            case "name" -> to.setName(from.getName());
+            case "description" -> to.setDescription(from.getDescription());
+            case "price" -> to.setPrice(from.getPrice());
+            case "stock" -> to.setStock(from.getStock());
+            case "category" -> to.setCategory(from.getCategory());
+            default -> throw new IllegalArgumentException("Champ inconnu: " + field);
+        }
+    }
+    
+    static void copyField(String field, ProductEvent from, ProductEvent to) {
+        switch (field) {
+            case "name" -> to.setName(from.getName());
+            case "description" -> to.setDescription(from.getDescription());
+            case "price" -> to.setPrice(from.getPrice());
+            case "stock" -> to.setStock(from.getStock());
+            case "category" -> to.setCategory(from.getCategory());
+            default -> throw new IllegalArgumentException("Champ inconnu: " + field);
+        }
+    }
+    
+    /**
+     * Fusionne deux UPDATED successifs d'un même produit dans le plus récent :
+     * les champs que seul l'ancien avait modifiés y sont recopiés (leur valeur est toujours
+     * la bonne puisque le récent ne les a pas touchés). Un snapshot reste un snapshot.
+     */
+    static ProductEvent merge(ProductEvent older, ProductEvent newer) {
+        List<String> newerFields = newer.getChangedFields();
+        if (newerFields == null) {
+            return newer;
+        }
+        List<String> olderFields = older.getChangedFields() != null ? older.getChangedFields() : FIELDS;
+        Set<String> union = new LinkedHashSet<>(newerFields);
+        for (String field : olderFields) {
+            if (union.add(field)) {
+                copyField(field, older, newer);
+            }
+        }
+        if (older.getChangedFields() == null) {
+            newer.setChangedFields(null);
+        } else {
+            List<String> sorted = new ArrayList<>(union);
+            Collections.sort(sorted);
+            newer.setChangedFields(sorted);
+        }
+        return newer;
+    }
+}
@@ -1,19 +1,43 @@
 package com.microcommerce.productservice.service;
 
 import com.microcommerce.productservice.config.RabbitMQConfig;
+import com.microcommerce.productservice.entity.OutboxEvent;
 import com.microcommerce.productservice.entity.Product;
 import com.microcommerce.productservice.event.ProductEvent;
+import com.microcommerce.productservice.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
 /**
  * Service pour publier les événements produits vers RabbitMQ
  * 
  * Chaque fois qu'un produit est créé, modifié ou supprimé,
  * on envoie un event pour que les autres services se synchronisent.
+ * 
+ * Avec product.outbox.enabled=true, l'event n'est plus envoyé directement : il est écrit
+ * dans l'outbox MongoDB dans la même transaction que le produit, et c'est OutboxRelay
+ * qui l'envoie ensuite (plus d'event perdu si RabbitMQ est down au moment de l'écriture)
+ * 
+ * Avec product.events.coalesce.enabled=true, les PRODUCT_UPDATED d'un même produit sont
+ * regroupés sur une courte fenêtre (voir ProductEventCoalescer). En mode outbox le regroupement
+ * se fait dans le relais, lot par lot, pour ne pas sortir l'écriture de la transaction.
+ * 
+ * Avec product.events.format=delta, un PRODUCT_UPDATED dont on connaît les champs modifiés
+ * ne transporte que ceux-là (plus l'id et la version) : sur le chemin chaud des stocks,
+ * plus de description ni de nom dans chaque message.
  */
 @Service
 public class ProductEventPublisher {
@@ -23,6 +47,45 @@ public class ProductEventPublisher {
     @Autowired
     private RabbitTemplate rabbitTemplate;
     
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${product.outbox.enabled:false}")
+    private boolean outboxEnabled;
+    
+    @Value("${product.events.format:full}")
+    private String eventFormat;
+    
+    @Value("${product.events.coalesce.enabled:false}")
+    private boolean coalesceEnabled;
+    
+    @Value("${product.events.coalesce.window-ms:200}")
+    private long coalesceWindowMs;
+    
+    private ProductEventCoalescer coalescer;
+    
+    @PostConstruct
+    public void init() {
+        if (coalesceEnabled && !outboxEnabled) {
+            ProductEventCoalescer created = new ProductEventCoalescer(coalesceWindowMs, this::send);
+            meterRegistry.gauge("product.events.coalesce.pending", created, ProductEventCoalescer::pendingCount);
+            FunctionCounter.builder("product.events.coalesce.merged", created, ProductEventCoalescer::mergedUpdates)
+                    .register(meterRegistry);
+            coalescer = created;
+            logger.info("Regroupement des PRODUCT_UPDATED activé (fenêtre: {}ms)", coalesceWindowMs);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (coalescer != null) {
+            coalescer.shutdown();
+        }
+    }
+    
     /**
      * Publie un événement de création de produit
      */
@@ -33,12 +96,30 @@ public class ProductEventPublisher {
     }
     
     /**
-     * Publie un événement de mise à jour de produit
+     * Publie un événement de mise à jour de produit (état complet)
      */
     public void publishProductUpdated(Product product) {
-        ProductEvent event = createProductEvent(product, ProductEvent.EventType.UPDATED);
+        publishProductUpdated(product, null);
+    }
+    
+    /**
+     * Publie un événement de mise à jour de produit. En format delta, seuls les champs
+     * de changedFields sont envoyés (null = état complet)
+     */
+    public void publishProductUpdated(Product product, Set<String> changedFields) {
+        ProductEvent event = isDeltaFormat() && changedFields != null
+                ? createDeltaEvent(product, changedFields)
+                : createProductEvent(product, ProductEvent.EventType.UPDATED);
         publishEvent(event, RabbitMQConfig.PRODUCT_UPDATED_ROUTING_KEY);
-        logger.info("Événement PRODUCT_UPDATED publié pour le produit: {}", product.getId());
+        logger.info("Événement PRODUCT_UPDATED publié pour le produit: {} (version {})", product.getId(), product.getVersion());
+    }
+    
+    /**
+     * Republie l'état complet d'un produit, à la demande d'un consommateur qui s'est désynchronisé
+     */
+    public void publishProductSnapshot(Product product) {
+        publishEvent(createProductEvent(product, ProductEvent.EventType.UPDATED), RabbitMQConfig.PRODUCT_UPDATED_ROUTING_KEY, true);
+        logger.debug("Snapshot publié pour le produit: {} (version {})", product.getId(), product.getVersion());
     }
     
     /**
@@ -57,7 +138,7 @@ public class ProductEventPublisher {
      * Crée un ProductEvent à partir d'une entité Product
      */
     private ProductEvent createProductEvent(Product product, ProductEvent.EventType eventType) {
-        return new ProductEvent(
+        ProductEvent event = new ProductEvent(
             product.getId(),
             product.getName(),
             product.getDescription(),
@@ -66,12 +147,61 @@ public class ProductEventPublisher {
             product.getCategory(),
             eventType
         );
+        event.setVersion(product.getVersion());
+        return event;
+    }
+    
+    /**
+     * Crée un PRODUCT_UPDATED qui ne contient que les champs modifiés
+     */
+    private ProductEvent createDeltaEvent(Product product, Set<String> changedFields) {
+        ProductEvent event = new ProductEvent();
+        event.setProductId(product.getId());
+        event.setEventType(ProductEvent.EventType.UPDATED);
+        event.setVersion(product.getVersion());
+        for (String field : changedFields) {
+            ProductEventDeltas.copyField(field, product, event);
+        }
+        List<String> fields = new ArrayList<>(changedFields);
+        Collections.sort(fields);
+        event.setChangedFields(fields);
+        return event;
+    }
+    
+    private boolean isDeltaFormat() {
+        return "delta".equalsIgnoreCase(eventFormat);
     }
     
     /**
-     * Envoie l'événement vers RabbitMQ
+     * Envoie l'événement vers RabbitMQ, ou le dépose dans l'outbox si elle est activée
      */
     private void publishEvent(ProductEvent event, String routingKey) {
+        publishEvent(event, routingKey, false);
+    }
+    
+    /**
+     * snapshot = état complet republié sans écriture derrière : ne compte pas dans le mergedCount d'un regroupement
+     */
+    private void publishEvent(ProductEvent event, String routingKey, boolean snapshot) {
+        if (outboxEnabled) {
+            // Pas de try/catch ici : si l'écriture dans l'outbox échoue, toute la transaction
+            // (et donc l'écriture du produit) doit être annulée
+            OutboxEvent outboxEvent = new OutboxEvent(RabbitMQConfig.PRODUCT_EXCHANGE, routingKey, event);
+            outboxEvent.setSnapshot(snapshot);
+            outboxEventRepository.save(outboxEvent);
+            logger.debug("Événement déposé dans l'outbox: {}", event);
+            return;
+        }
+        
+        if (coalescer != null) {
+            coalescer.submit(event, routingKey, snapshot);
+            return;
+        }
+        
+        send(event, routingKey);
+    }
+    
+    private void send(ProductEvent event, String routingKey) {
         try {
             rabbitTemplate.convertAndSend(
                 RabbitMQConfig.PRODUCT_EXCHANGE,
@@ -0,0 +1,83 @@
+package com.microcommerce.productservice.service;
+
+import com.microcommerce.productservice.entity.Product;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Gestion du paramètre ?fields= (sparse fieldsets) sur les endpoints de liste
+ * 
+ * Le client choisit les champs dont il a besoin (ex: fields=name,price) : on ne demande
+ * que ceux-là à MongoDB (projection) et on ne sérialise que ceux-là en JSON.
+ * L'id est toujours renvoyé.
+ */
+public final class ProductFields {
+    
+    // Champs exposés par l'API, dans l'ordre où on les sérialise
+    public static final Set<String> ALLOWED = Set.of("id", "name", "description", "price", "stock", "category");
+    private static final List<String> ORDER = List.of("id", "name", "description", "price", "stock", "category");
+    
+    private ProductFields() {
+    }
+    
+    /**
+     * Parse "name,price" en ensemble de champs
+     * @return null si aucun champ n'est demandé (= produit complet)
+     */
+    public static Set<String> parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        Set<String> selected = new LinkedHashSet<>();
+        selected.add("id");
+        for (String field : fields.split(",")) {
+            String trimmed = field.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            if (!ALLOWED.contains(trimmed)) {
+                throw new IllegalArgumentException("Champ inconnu dans fields: " + trimmed + " (autorisés: " + ORDER + ")");
+            }
+            selected.add(trimmed);
+        }
+        return selected;
+    }
+    
+    /**
+     * Garde seulement les champs demandés d'un produit
+     */
+    public static Map<String, Object> select(Product product, Set<String> fields) {
+        Map<String, Object> selected = new LinkedHashMap<>();
+        for (String field : ORDER) {
+            if (fields.contains(field)) {
+                selected.put(field, valueOf(product, field));
+            }
+        }
+        return selected;
+    }
+    
+    public static List<Map<String, Object>> select(List<Product> products, Set<String> fields) {
+        List<Map<String, Object>> selected = new ArrayList<>(products.size());
+        for (Product product : products) {
+            selected.add(select(product, fields));
+        }
+        return selected;
+    }
+    
+    private static Object valueOf(Product product, String field) {
+        return switch (field) {
+            case "id" -> product.getId();
+            case "name" -> product.getName();
+            case "description" -> product.getDescription();
+            case "price" -> product.getPrice();
+            case "stock" -> product.getStock();
+            case "category" -> product.getCategory();
+            default -> throw new IllegalArgumentException("Champ inconnu: " + field);
+        };
+    }
+}
@@ -0,0 +1,18 @@
+package com.microcommerce.productservice.service;
+
+/**
+ * Levée quand on demande un produit qui n'existe pas (le controller la transforme en 404)
+ */
+public class ProductNotFoundException extends RuntimeException {
+    
+    private final String productId;
+    
+    public ProductNotFoundException(String productId) {
+        super("Produit non trouvé avec l'ID: " + productId);
+        this.productId = productId;
+    }
+    
+    public String getProductId() {
+        return productId;
+    }
+}
@@ -1,17 +1,51 @@
 package com.microcommerce.productservice.service;
 
+import com.microcommerce.productservice.cache.MappedProductInfoStore;
+import com.microcommerce.productservice.cache.ProductCache;
+import com.microcommerce.productservice.cache.ProductIdFilter;
+import com.microcommerce.productservice.cache.QueryResultCache;
+import com.microcommerce.productservice.cache.QueryResultCache.QueryKey;
+import com.microcommerce.productservice.config.OutboxConfig;
 import com.microcommerce.productservice.entity.Product;
+import com.microcommerce.productservice.dto.CatalogStatsDto;
+import com.microcommerce.productservice.dto.CursorPageDto;
+import com.microcommerce.productservice.dto.FacetedSearchDto;
+import com.microcommerce.productservice.dto.ProductBatchInfoDto;
 import com.microcommerce.productservice.dto.ProductInfoDto;
+import com.microcommerce.productservice.dto.ProductSuggestionDto;
+import com.microcommerce.productservice.repository.ProductChange;
 import com.microcommerce.productservice.repository.ProductRepository;
+import com.microcommerce.productservice.repository.StockAdjustment;
+import com.microcommerce.productservice.search.CatalogColumns;
+import com.microcommerce.productservice.search.FacetQuery;
+import com.microcommerce.productservice.search.FacetResult;
+import com.microcommerce.productservice.search.KeywordSearchIndex;
+import com.microcommerce.productservice.search.NameSuggestIndex;
+import com.microcommerce.productservice.search.PriceIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 /**
  * Notre service pour gérer les produits
@@ -23,12 +57,71 @@ public class ProductService {
     
     private static final Logger logger = LoggerFactory.getLogger(ProductService.class);
     
+    // Ce qu'il faut pour trier une fourchette de prix quand on repasse par MongoDB
+    private static final Set<String> PRICE_FIELDS = Set.of("id", "price");
+    
     @Autowired
     private ProductRepository productRepository;
     
     @Autowired
     private ProductEventPublisher productEventPublisher;
     
+    @Autowired
+    private ProductCache productCache;
+    
+    @Autowired
+    private MappedProductInfoStore mappedProductInfoStore;
+    
+    @Autowired
+    private ProductIdFilter productIdFilter;
+    
+    @Autowired
+    private SingleFlight singleFlight;
+    
+    @Autowired
+    private QueryResultCache queryResultCache;
+    
+    @Autowired
+    private ProductChangeNotifier productChangeNotifier;
+    
+    @Autowired
+    private CatalogStatistics catalogStatistics;
+    
+    @Autowired
+    private CatalogVersions catalogVersions;
+    
+    @Autowired
+    private KeywordSearchIndex keywordSearchIndex;
+    
+    @Autowired
+    private NameSuggestIndex nameSuggestIndex;
+    
+    @Autowired
+    private PriceIndex priceIndex;
+    
+    @Autowired
+    private CatalogColumns catalogColumns;
+    
+    @Value("${product.facets.price-buckets:50,100,250,500,1000}")
+    private BigDecimal[] priceBuckets;
+    
+    @Value("${product.suggest.max-results:20}")
+    private int maxSuggestions;
+    
+    @Value("${product.pagination.default-size:50}")
+    private int defaultPageSize;
+    
+    @Value("${product.pagination.max-size:200}")
+    private int maxPageSize;
+    
+    @Value("${product.order-events.batch.dedup-window:200}")
+    private int stockChangeKeyWindow;
+    
+    // Seulement en mode outbox (product.outbox.enabled=true) : transaction MongoDB autour des écritures
+    @Autowired(required = false)
+    @Qualifier(OutboxConfig.TRANSACTION_TEMPLATE)
+    private TransactionTemplate outboxTransactionTemplate;
+    
     /**
      * Récupère tous les produits qu'on a
      */
@@ -38,13 +131,41 @@ public class ProductService {
         return productRepository.findAll();
     }
     
+    /**
+     * Tous les produits, en ne ramenant de MongoDB que les champs demandés (null = tous)
+     */
+    @Transactional(readOnly = true)
+    public List<Product> getAllProducts(Set<String> fields) {
+        if (fields == null) {
+            return getAllProducts();
+        }
+        logger.debug("Récupération de tous les produits (champs: {})", fields);
+        return productRepository.findMatching(null, fields);
+    }
+    
+    /**
+     * Récupère une page du catalogue complet (pagination par curseur)
+     */
+    @Transactional(readOnly = true)
+    public CursorPageDto<Product> getAllProductsPage(String cursor, Integer size, Set<String> fields) {
+        logger.debug("Récupération d'une page de produits (curseur: {}, taille: {})", cursor, size);
+        return fetchPage(null, cursor, size, fields);
+    }
+    
     /**
      * Chope un produit par son ID
      */
     @Transactional(readOnly = true)
     public Optional<Product> getProductById(String id) {
         logger.debug("Récupération du produit avec l'ID: {}", id);
-        return productRepository.findById(id);
+        if (!productIdFilter.mightContain(id)) {
+            return Optional.empty();
+        }
+        Optional<Product> product = Optional.ofNullable(productCache.get(id, this::loadProduct));
+        if (product.isEmpty()) {
+            productIdFilter.recordMiss();
+        }
+        return product;
     }
     
     /**
@@ -53,11 +174,46 @@ public class ProductService {
     @Transactional(readOnly = true)
     public ProductInfoDto getProductInfoDto(String id) {
         logger.debug("Récupération des infos produit pour service - ID: {}", id);
-        Product product = productRepository.findById(id)
-            .orElseThrow(() -> new RuntimeException("Produit non trouvé avec l'ID: " + id));
+        // Store mappé en mémoire si activé : pas de Product ni d'aller-retour MongoDB
+        ProductInfoDto stored = mappedProductInfoStore.get(id);
+        if (stored != null) {
+            return stored;
+        }
+        Product product = getProductById(id)
+            .orElseThrow(() -> new ProductNotFoundException(id));
         return convertToProductInfoDto(product);
     }
     
+    /**
+     * Récupère les infos de plusieurs produits en une fois (format allégé)
+     * Les produits absents du cache sont chargés avec une seule requête $in
+     */
+    @Transactional(readOnly = true)
+    public ProductBatchInfoDto getProductInfoBatch(List<String> ids) {
+        // On vire les doublons et les IDs vides tout en gardant l'ordre de la demande
+        Set<String> uniqueIds = new LinkedHashSet<>();
+        for (String id : ids) {
+            if (id != null && !id.isBlank()) {
+                uniqueIds.add(id);
+            }
+        }
+        logger.debug("Récupération en lot des infos produit pour {} IDs", uniqueIds.size());
+        
+        Map<String, Product> found = productCache.getAll(uniqueIds, this::loadProducts);
+        
+        Map<String, ProductInfoDto> products = new LinkedHashMap<>();
+        List<String> notFound = new ArrayList<>();
+        for (String id : uniqueIds) {
+            Product product = found.get(id);
+            if (product != null) {
+                products.put(id, convertToProductInfoDto(product));
+            } else {
+                notFound.add(id);
+            }
+        }
+        return new ProductBatchInfoDto(products, notFound);
+    }
+    
     /**
      * Crée un nouveau produit (avec validation et événement RabbitMQ)
      */
@@ -72,12 +228,16 @@ public class ProductService {
         }
         
         logger.info("Création du produit: {}", product.getName());
-        Product savedProduct = productRepository.save(product);
-        
-        // On balance l'événement de création dans RabbitMQ
-        productEventPublisher.publishProductCreated(savedProduct);
-        
-        return savedProduct;
+        return write(() -> {
+            product.setVersion(1L);
+            Product savedProduct = productRepository.save(product);
+            productChangeNotifier.productSaved(savedProduct);
+            
+            // On balance l'événement de création dans RabbitMQ
+            productEventPublisher.publishProductCreated(savedProduct);
+            
+            return savedProduct;
+        });
     }
     
     /**
@@ -86,7 +246,7 @@ public class ProductService {
     public Product updateProduct(String id, Product productDetails) {
         logger.info("Mise à jour du produit ID: {}", id);
         
-        return productRepository.findById(id)
+        return write(() -> productRepository.findById(id)
                 .map(existingProduct -> {
                     // On vérifie que le nouveau nom n'est pas déjà pris par un autre produit, sinon c'est chiant
                     if (!existingProduct.getName().equalsIgnoreCase(productDetails.getName()) &&
@@ -94,22 +254,22 @@ public class ProductService {
                         throw new IllegalArgumentException("Un autre produit avec ce nom existe déjà: " + productDetails.getName());
                     }
                     
-                    // On met à jour tous les champs
-                    existingProduct.setName(productDetails.getName());
-                    existingProduct.setDescription(productDetails.getDescription());
-                    existingProduct.setPrice(productDetails.getPrice());
-                    existingProduct.setStock(productDetails.getStock());
-                    existingProduct.setCategory(productDetails.getCategory());
-                    
-                    Product updatedProduct = productRepository.save(existingProduct);
-                    logger.info("Produit mis à jour avec succès: {}", updatedProduct.getName());
+                    // On met à jour tous les champs (et la version) en une seule opération côté serveur
+                    ProductChange change = productRepository.updateDetails(id, productDetails)
+                            .orElseThrow(() -> new ProductNotFoundException(id));
+                    Product updatedProduct = change.after();
+                    productChangeNotifier.productSaved(updatedProduct);
+                    logger.info("Produit mis à jour avec succès: {} (version {})", updatedProduct.getName(), updatedProduct.getVersion());
                     
-                    // On balance l'événement de mise à jour dans RabbitMQ
-                    productEventPublisher.publishProductUpdated(updatedProduct);
+                    // On balance l'événement de mise à jour dans RabbitMQ (juste les champs qui ont changé en format delta).
+                    // Le diff se fait contre l'état d'avant renvoyé par l'écriture, pas contre existingProduct :
+                    // une commande passée entre le findById et l'update changerait sinon le delta
+                    productEventPublisher.publishProductUpdated(updatedProduct,
+                            ProductEventDeltas.changedFields(change.before(), updatedProduct));
                     
                     return updatedProduct;
                 })
-                .orElseThrow(() -> new RuntimeException("Produit non trouvé avec l'ID: " + id));
+                .orElseThrow(() -> new ProductNotFoundException(id)));
     }
     
     /**
@@ -118,15 +278,86 @@ public class ProductService {
     public void deleteProduct(String id) {
         logger.info("Suppression du produit ID: {}", id);
         
-        if (!productRepository.existsById(id)) {
-            throw new RuntimeException("Produit non trouvé avec l'ID: " + id);
-        }
+        write(() -> {
+            if (!productRepository.existsById(id)) {
+                throw new ProductNotFoundException(id);
+            }
+            
+            productRepository.deleteById(id);
+            productChangeNotifier.productDeleted(id);
+            logger.info("Produit supprimé avec succès, ID: {}", id);
+            
+            // On balance l'événement de suppression dans RabbitMQ
+            productEventPublisher.publishProductDeleted(id);
+            return null;
+        });
+    }
+    
+    /**
+     * Applique d'un coup des deltas de stock (un seul bulkWrite MongoDB)
+     * Utilisé par le consommateur d'événements commandes en mode batch. Un delta avec une clé
+     * n'est appliqué qu'une fois : rejouer le même lot après une erreur ne compte rien en double
+     * @return les produits concernés (les IDs inconnus sont ignorés)
+     */
+    public List<Product> adjustStockBatch(List<StockAdjustment> adjustments) {
+        logger.info("Ajustement groupé du stock: {} deltas", adjustments.size());
         
-        productRepository.deleteById(id);
-        logger.info("Produit supprimé avec succès, ID: {}", id);
+        // Les IDs inconnus à coup sûr ne partent même pas dans le bulkWrite
+        Set<String> requested = new LinkedHashSet<>();
+        Set<String> known = new LinkedHashSet<>();
+        List<StockAdjustment> applicable = new ArrayList<>();
+        for (StockAdjustment adjustment : adjustments) {
+            requested.add(adjustment.productId());
+            if (productIdFilter.mightContain(adjustment.productId())) {
+                known.add(adjustment.productId());
+                applicable.add(adjustment);
+            }
+        }
+        List<Product> updatedProducts = applicable.isEmpty() ? List.of() : write(() -> {
+            List<Product> updated = productRepository.adjustStockBulk(applicable, stockChangeKeyWindow);
+            for (Product updatedProduct : updated) {
+                try {
+                    productChangeNotifier.productSaved(updatedProduct);
+                    productEventPublisher.publishProductUpdated(updatedProduct, ProductEventDeltas.STOCK_ONLY);
+                } catch (RuntimeException e) {
+                    if (outboxTransactionTemplate != null) {
+                        throw e; // en mode outbox on annule tout (stock compris), le lot sera rejoué
+                    }
+                    // Le stock est déjà écrit : une erreur ici ne doit pas faire rejouer le lot
+                    logger.error("Stock du produit {} mis à jour mais notification/événement en échec",
+                                updatedProduct.getId(), e);
+                    productCache.evict(updatedProduct.getId());
+                }
+            }
+            return updated;
+        });
+        for (Product updatedProduct : updatedProducts) {
+            if (updatedProduct.getStock() < 0) {
+                logger.warn("Stock négatif détecté pour le produit {}: nouveau stock = {}",
+                           updatedProduct.getId(), updatedProduct.getStock());
+            }
+        }
         
-        // On balance l'événement de suppression dans RabbitMQ
-        productEventPublisher.publishProductDeleted(id);
+        if (updatedProducts.size() < requested.size()) {
+            Set<String> missing = new LinkedHashSet<>(requested);
+            updatedProducts.forEach(product -> missing.remove(product.getId()));
+            missing.stream().filter(known::contains).forEach(id -> productIdFilter.recordMiss());
+            logger.warn("Produits non trouvés pour la mise à jour de stock: {}", missing);
+        }
+        return updatedProducts;
+    }
+    
+    /**
+     * Republie l'état complet (snapshot) des produits demandés, pour un consommateur qui a
+     * détecté un trou dans les versions. Les IDs inconnus sont ignorés
+     * @return le nombre de snapshots publiés
+     */
+    @Transactional(readOnly = true)
+    public int publishSnapshots(List<String> ids) {
+        List<Product> products = getProductsByIds(ids);
+        products.forEach(productEventPublisher::publishProductSnapshot);
+        logger.info("{} snapshots publiés ({} demandés)", products.size(), ids.size());
+        return products.size();
     }
     
     /**
@@ -135,7 +366,24 @@ public class ProductService {
     @Transactional(readOnly = true)
     public List<Product> searchProductsByName(String name) {
         logger.debug("Recherche de produits contenant: {}", name);
-        return productRepository.findByNameContainingIgnoreCase(name);
+        // Recherche insensible à la casse : même clé quelle que soit la casse
+        QueryKey key = catalogQueryKey("name", name != null ? name.toLowerCase(Locale.ROOT) : null, null);
+        return queryResultCache.get(key, () -> productRepository.findByNameContainingIgnoreCase(name));
+    }
+    
+    /**
+     * Recherche par nom, en ne ramenant que les champs demandés (null = tous)
+     */
+    @Transactional(readOnly = true)
+    public List<Product> searchProductsByName(String name, Set<String> fields) {
+        if (fields == null) {
+            return searchProductsByName(name);
+        }
+        logger.debug("Recherche de produits contenant: {} (champs: {})", name, fields);
+        QueryKey key = catalogQueryKey("name", name != null ? name.toLowerCase(Locale.ROOT) : null, fields);
+        // Même filtre que findByNameContainingIgnoreCase : sous-chaîne littérale, insensible à la casse
+        return queryResultCache.get(key, () -> productRepository.findMatching(
+                Criteria.where("name").regex(Pattern.compile(Pattern.quote(name), Pattern.CASE_INSENSITIVE)), fields));
     }
     
     /**
@@ -144,7 +392,30 @@ public class ProductService {
     @Transactional(readOnly = true)
     public List<Product> getProductsByCategory(String category) {
         logger.debug("Récupération des produits de la catégorie: {}", category);
-        return productRepository.findByCategory(category);
+        return queryResultCache.get(categoryQueryKey(category, null), () -> productRepository.findByCategory(category));
+    }
+    
+    /**
+     * Produits d'une catégorie, en ne ramenant que les champs demandés (null = tous)
+     */
+    @Transactional(readOnly = true)
+    public List<Product> getProductsByCategory(String category, Set<String> fields) {
+        if (fields == null) {
+            return getProductsByCategory(category);
+        }
+        logger.debug("Récupération des produits de la catégorie: {} (champs: {})", category, fields);
+        return queryResultCache.get(categoryQueryKey(category, fields),
+                () -> productRepository.findMatching(Criteria.where("category").is(category), fields));
+    }
+    
+    /**
+     * Une page des produits d'une catégorie
+     */
+    @Transactional(readOnly = true)
+    public CursorPageDto<Product> getProductsByCategoryPage(String category, String cursor, Integer size,
+                                                            Set<String> fields) {
+        logger.debug("Récupération d'une page de la catégorie {} (curseur: {})", category, cursor);
+        return fetchPage(Criteria.where("category").is(category), cursor, size, fields);
     }
     
     /**
@@ -152,8 +423,101 @@ public class ProductService {
      */
     @Transactional(readOnly = true)
     public List<Product> getProductsByPriceRange(BigDecimal minPrice, BigDecimal maxPrice) {
-        logger.debug("Recherche de produits entre {} et {} euros", minPrice, maxPrice);
-        return productRepository.findByPriceBetween(minPrice, maxPrice);
+        return getProductsByPriceRange(minPrice, maxPrice, null, null);
+    }
+    
+    /**
+     * Produits dans une fourchette de prix, triés par prix ("asc" par défaut ou "desc") et éventuellement limités
+     * Servi par l'index des prix en mémoire ; MongoDB seulement tant qu'il n'est pas prêt
+     */
+    @Transactional(readOnly = true)
+    public List<Product> getProductsByPriceRange(BigDecimal minPrice, BigDecimal maxPrice, String sort, Integer limit) {
+        return getProductsByPriceRange(minPrice, maxPrice, sort, limit, null);
+    }
+    
+    /**
+     * Pareil, en ne ramenant de MongoDB que les champs demandés (null = tous)
+     */
+    @Transactional(readOnly = true)
+    public List<Product> getProductsByPriceRange(BigDecimal minPrice, BigDecimal maxPrice, String sort, Integer limit,
+                                                 Set<String> fields) {
+        logger.debug("Recherche de produits entre {} et {} euros (tri: {}, limite: {}, champs: {})",
+                minPrice, maxPrice, sort, limit, fields);
+        boolean descending = parsePriceSort(sort);
+        if (limit != null && limit < 1) {
+            throw new IllegalArgumentException("La limite doit être positive");
+        }
+        
+        if (!priceIndex.isReady()) {
+            List<Product> products = scanPriceRange(minPrice, maxPrice, fields);
+            if (descending) {
+                Collections.reverse(products);
+            }
+            return limit != null && products.size() > limit ? products.subList(0, limit) : products;
+        }
+        return getProductsByIds(priceIndex.findIdsInRange(minPrice, maxPrice, descending, limit != null ? limit : 0), fields);
+    }
+    
+    /**
+     * Une page des produits dans une fourchette de prix (bornes exclues, comme findByPriceBetween)
+     * Triée par (prix, id) comme l'index des prix : le prix est stocké en string dans Mongo,
+     * un filtre gt/lt dessus comparerait du texte ("10.00" < "9.00")
+     */
+    @Transactional(readOnly = true)
+    public CursorPageDto<Product> getProductsByPriceRangePage(BigDecimal minPrice, BigDecimal maxPrice,
+                                                              String cursor, Integer size, Set<String> fields) {
+        logger.debug("Récupération d'une page de produits entre {} et {} euros (curseur: {})", minPrice, maxPrice, cursor);
+        int pageSize = resolvePageSize(size);
+        Object[] after = PageCursor.decodePriced(cursor);
+        long afterCents = after != null ? (Long) after[0] : 0L;
+        String afterId = after != null ? (String) after[1] : null;
+        
+        List<PriceIndex.PricedId> entries;
+        if (priceIndex.isReady()) {
+            entries = priceIndex.findPageInRange(minPrice, maxPrice, afterCents, afterId, pageSize + 1);
+        } else {
+            // Index pas encore prêt : même ordre (prix, id), calculé sur le scan Mongo
+            entries = scanPriceRange(minPrice, maxPrice, PRICE_FIELDS).stream()
+                    .map(product -> new PriceIndex.PricedId(product.getId(), PriceIndex.toCents(product.getPrice())))
+                    .filter(entry -> afterId == null || entry.cents() > afterCents
+                            || (entry.cents() == afterCents && entry.id().compareTo(afterId) > 0))
+                    .limit(pageSize + 1L)
+                    .collect(Collectors.toList());
+        }
+        
+        boolean hasMore = entries.size() > pageSize;
+        List<PriceIndex.PricedId> page = hasMore ? entries.subList(0, pageSize) : entries;
+        List<Product> products = getProductsByIds(page.stream().map(PriceIndex.PricedId::id).collect(Collectors.toList()), fields);
+        if (!hasMore) {
+            return new CursorPageDto<>(products, null);
+        }
+        // Le curseur vient de l'index et pas du produit relu : un prix modifié entre-temps ne fait pas sauter de ligne
+        PriceIndex.PricedId last = page.get(page.size() - 1);
+        return new CursorPageDto<>(products, PageCursor.encodePriced(last.cents(), last.id()));
+    }
+    
+    /**
+     * Produits avec min < prix < max lus depuis MongoDB, triés par (prix, id)
+     * Le prix est comparé en BigDecimal ici (pas en string côté Mongo) et les produits sans prix
+     * sont ignorés comme dans PriceIndex.build. Ne sert que tant que l'index n'est pas prêt
+     * Avec des champs demandés, on ne ramène qu'eux plus le prix (nécessaire au filtre et au tri)
+     */
+    private List<Product> scanPriceRange(BigDecimal minPrice, BigDecimal maxPrice, Set<String> fields) {
+        List<Product> scanned;
+        if (fields == null) {
+            scanned = productRepository.findAll();
+        } else {
+            Set<String> projection = new LinkedHashSet<>(fields);
+            projection.add("price");
+            scanned = productRepository.findMatching(null, projection);
+        }
+        return scanned.stream()
+                .filter(product -> product.getPrice() != null
+                        && product.getPrice().compareTo(minPrice) > 0
+                        && product.getPrice().compareTo(maxPrice) < 0)
+                .sorted(Comparator.comparingLong((Product product) -> PriceIndex.toCents(product.getPrice()))
+                        .thenComparing(Product::getId))
+                .collect(Collectors.toCollection(ArrayList::new));
     }
     
     /**
@@ -162,7 +526,29 @@ public class ProductService {
     @Transactional(readOnly = true)
     public List<Product> getAvailableProducts() {
         logger.debug("Récupération des produits en stock");
-        return productRepository.findByStockGreaterThan(0);
+        return queryResultCache.get(catalogQueryKey("available", null, null), () -> productRepository.findByStockGreaterThan(0));
+    }
+    
+    /**
+     * Produits en stock, en ne ramenant que les champs demandés (null = tous)
+     */
+    @Transactional(readOnly = true)
+    public List<Product> getAvailableProducts(Set<String> fields) {
+        if (fields == null) {
+            return getAvailableProducts();
+        }
+        logger.debug("Récupération des produits en stock (champs: {})", fields);
+        return queryResultCache.get(catalogQueryKey("available", null, fields),
+                () -> productRepository.findMatching(Criteria.where("stock").gt(0), fields));
+    }
+    
+    /**
+     * Une page des produits en stock
+     */
+    @Transactional(readOnly = true)
+    public CursorPageDto<Product> getAvailableProductsPage(String cursor, Integer size, Set<String> fields) {
+        logger.debug("Récupération d'une page de produits en stock (curseur: {})", cursor);
+        return fetchPage(Criteria.where("stock").gt(0), cursor, size, fields);
     }
     
     /**
@@ -171,7 +557,21 @@ public class ProductService {
     @Transactional(readOnly = true)
     public List<Product> getLowStockProducts(Integer threshold) {
         logger.debug("Récupération des produits avec stock <= {}", threshold);
-        return productRepository.findLowStockProducts(threshold);
+        return queryResultCache.get(catalogQueryKey("low-stock", String.valueOf(threshold), null),
+                () -> productRepository.findLowStockProducts(threshold));
+    }
+    
+    /**
+     * Produits qui commencent à manquer, en ne ramenant que les champs demandés (null = tous)
+     */
+    @Transactional(readOnly = true)
+    public List<Product> getLowStockProducts(Integer threshold, Set<String> fields) {
+        if (fields == null) {
+            return getLowStockProducts(threshold);
+        }
+        logger.debug("Récupération des produits avec stock <= {} (champs: {})", threshold, fields);
+        return queryResultCache.get(catalogQueryKey("low-stock", String.valueOf(threshold), fields),
+                () -> productRepository.findMatching(Criteria.where("stock").lte(threshold), fields));
     }
     
     /**
@@ -180,39 +580,304 @@ public class ProductService {
     public Product updateStock(String id, Integer newStock) {
         logger.info("Mise à jour du stock pour le produit ID: {}, nouveau stock: {}", id, newStock);
         
-        return productRepository.findById(id)
-                .map(product -> {
-                    product.setStock(newStock);
-                    Product updatedProduct = productRepository.save(product);
-                    logger.info("Stock mis à jour pour le produit: {}", updatedProduct.getName());
-                    
-                    // On balance l'événement de mise à jour dans RabbitMQ (changement de stock)
-                    productEventPublisher.publishProductUpdated(updatedProduct);
-                    
-                    return updatedProduct;
-                })
-                .orElseThrow(() -> new RuntimeException("Produit non trouvé avec l'ID: " + id));
+        return write(() -> {
+            // Un seul $set côté serveur au lieu de findById + save du document complet
+            Product updatedProduct = productRepository.setStock(id, newStock)
+                    .orElseThrow(() -> new ProductNotFoundException(id));
+            productChangeNotifier.productSaved(updatedProduct);
+            logger.info("Stock mis à jour pour le produit: {}", updatedProduct.getName());
+            
+            // On balance l'événement de mise à jour dans RabbitMQ (changement de stock)
+            productEventPublisher.publishProductUpdated(updatedProduct, ProductEventDeltas.STOCK_ONLY);
+            
+            return updatedProduct;
+        });
+    }
+    
+    /**
+     * Ajoute (ou retire si négatif) une quantité au stock, de façon atomique ($inc côté MongoDB)
+     * Avec requireSufficientStock, un retrait qui ferait passer le stock sous zéro est refusé
+     * @throws InsufficientStockException si la garde n'est pas respectée
+     */
+    public Product adjustStock(String id, int delta, boolean requireSufficientStock) {
+        logger.info("Ajustement du stock pour le produit ID: {}, delta: {}", id, delta);
+        if (!productIdFilter.mightContain(id)) {
+            throw new ProductNotFoundException(id);
+        }
+        
+        return write(() -> {
+            Optional<Product> adjusted = productRepository.adjustStock(id, delta, requireSufficientStock);
+            if (adjusted.isEmpty()) {
+                // Deuxième aller-retour seulement en cas d'échec, pour savoir pourquoi
+                if (requireSufficientStock && delta < 0 && productRepository.existsById(id)) {
+                    throw new InsufficientStockException(id, -delta);
+                }
+                productIdFilter.recordMiss();
+                throw new ProductNotFoundException(id);
+            }
+            
+            Product updatedProduct = adjusted.get();
+            productChangeNotifier.productSaved(updatedProduct);
+            logger.info("Stock ajusté pour le produit {}: {} -> {}", updatedProduct.getName(),
+                       updatedProduct.getStock() - delta, updatedProduct.getStock());
+            
+            productEventPublisher.publishProductUpdated(updatedProduct, ProductEventDeltas.STOCK_ONLY);
+            return updatedProduct;
+        });
+    }
+    
+    /**
+     * Recherche à facettes : filtres combinés + comptages pour la sidebar, le tout en un seul appel
+     * (résultats classés par pertinence s'il y a des mots-clés, sinon dans l'ordre du catalogue)
+     */
+    @Transactional(readOnly = true)
+    public FacetedSearchDto facetedSearch(FacetQuery query, int page, Integer size) {
+        logger.debug("Recherche à facettes: {} (page {}, taille {})", query, page, size);
+        if (!catalogColumns.isReady(query)) {
+            throw new IllegalStateException("La vue du catalogue n'est pas encore prête");
+        }
+        if (page < 0) {
+            throw new IllegalArgumentException("Le numéro de page doit être positif");
+        }
+        int pageSize = resolvePageSize(size);
+        
+        List<BigDecimal> bounds = List.of(priceBuckets);
+        FacetResult result = catalogColumns.search(query, bounds);
+        
+        List<String> matchingIds = result.matchingIds();
+        int from = (int) Math.min((long) page * pageSize, matchingIds.size());
+        int to = Math.min(from + pageSize, matchingIds.size());
+        List<Product> items = getProductsByIds(matchingIds.subList(from, to));
+        
+        List<FacetedSearchDto.PriceBucket> histogram = new ArrayList<>();
+        long[] bucketCounts = result.priceBucketCounts();
+        for (int i = 0; i < bucketCounts.length; i++) {
+            BigDecimal min = i > 0 ? bounds.get(i - 1) : null;
+            BigDecimal max = i < bounds.size() ? bounds.get(i) : null;
+            histogram.add(new FacetedSearchDto.PriceBucket(min, max, bucketCounts[i]));
+        }
+        
+        return new FacetedSearchDto(items, matchingIds.size(), page, pageSize, result.categoryCounts(),
+                histogram, result.inStockCount(), result.outOfStockCount());
+    }
+    
+    /**
+     * Autocomplétion sur les noms de produits (index en mémoire, jamais MongoDB)
+     * @throws IllegalStateException si l'index n'est pas encore construit
+     */
+    public List<ProductSuggestionDto> suggestProducts(String prefix, int limit) {
+        if (!nameSuggestIndex.isReady()) {
+            throw new IllegalStateException("L'index d'autocomplétion n'est pas encore prêt");
+        }
+        return nameSuggestIndex.suggest(prefix, Math.min(limit, maxSuggestions));
+    }
+    
+    /**
+     * Nombre total de produits (compteur maintenu en mémoire, pas de scan)
+     */
+    public long getProductCount() {
+        return catalogStatistics.getTotalCount();
+    }
+    
+    /**
+     * Nombre de produits d'une catégorie (compteur maintenu en mémoire)
+     */
+    public long countByCategory(String category) {
+        return catalogStatistics.getCountByCategory(category);
+    }
+    
+    /**
+     * ETag du catalogue complet, qui change à chaque écriture sur n'importe quel produit
+     */
+    public String getCatalogETag() {
+        return catalogVersions.catalogETag();
+    }
+    
+    /**
+     * ETag d'une catégorie, qui ne change que quand un de ses produits change
+     */
+    public String getCategoryETag(String category) {
+        return catalogVersions.categoryETag(category);
+    }
+    
+    /**
+     * Statistiques complètes du catalogue (total, par catégorie, stock, valeur)
+     */
+    public CatalogStatsDto getCatalogStats() {
+        return catalogStatistics.snapshot();
     }
     
     /**
      * Recherche full-text dans les produits (nom + description)
+     * Passe par l'index inversé en mémoire, classé par pertinence ; MongoDB seulement tant qu'il n'est pas prêt
      */
     @Transactional(readOnly = true)
     public List<Product> searchProducts(String keyword) {
-        logger.debug("Recherche full-text avec le mot-clé: {}", keyword);
-        return productRepository.searchByKeyword(keyword);
+        return searchProducts(keyword, null);
+    }
+    
+    /**
+     * Recherche full-text, en ne ramenant de MongoDB que les champs demandés (null = tous)
+     */
+    @Transactional(readOnly = true)
+    public List<Product> searchProducts(String keyword, Set<String> fields) {
+        logger.debug("Recherche full-text avec le mot-clé: {} (champs: {})", keyword, fields);
+        return queryResultCache.get(catalogQueryKey("keyword", keyword, fields), () -> {
+            if (!keywordSearchIndex.isReady()) {
+                if (fields == null) {
+                    return productRepository.searchByKeyword(keyword);
+                }
+                // Même filtre que searchByKeyword
+                return productRepository.findMatching(new Criteria().orOperator(
+                        Criteria.where("name").regex(keyword, "i"),
+                        Criteria.where("description").regex(keyword, "i")), fields);
+            }
+            return getProductsByIds(keywordSearchIndex.search(keyword), fields);
+        });
+    }
+    
+    /**
+     * Exécute une écriture : en mode outbox dans une transaction MongoDB (produit et événement
+     * commités ensemble), directement sinon. Les lectures ne passent jamais par là
+     */
+    private <T> T write(Supplier<T> operation) {
+        if (outboxTransactionTemplate == null) {
+            return operation.get();
+        }
+        return outboxTransactionTemplate.execute(status -> operation.get());
+    }
+    
+    /**
+     * Clé de cache d'une requête qui ne dépend que d'une catégorie
+     */
+    private QueryKey categoryQueryKey(String category, Set<String> fields) {
+        return QueryKey.of("category", category, fields,
+                catalogVersions.getCategoryVersion(category), catalogVersions.getUnknownOriginVersion());
+    }
+    
+    /**
+     * Clé de cache d'une requête qui dépend de tout le catalogue
+     */
+    private QueryKey catalogQueryKey(String query, String params, Set<String> fields) {
+        return QueryKey.of(query, params, fields, catalogVersions.getGlobalVersion(), 0);
+    }
+    
+    /**
+     * Sens du tri par prix : true si décroissant
+     */
+    private boolean parsePriceSort(String sort) {
+        if (sort == null || sort.equalsIgnoreCase("asc")) {
+            return false;
+        }
+        if (sort.equalsIgnoreCase("desc")) {
+            return true;
+        }
+        throw new IllegalArgumentException("Tri invalide (asc ou desc attendu): " + sort);
+    }
+    
+    /**
+     * Charge des produits par ID en gardant l'ordre demandé (cache d'abord, puis une requête $in pour le reste)
+     */
+    private List<Product> getProductsByIds(List<String> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<String, Product> found = productCache.getAll(ids, this::loadProducts);
+        List<Product> products = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Product product = found.get(id);
+            if (product != null) {
+                products.add(product);
+            }
+        }
+        return products;
+    }
+    
+    /**
+     * Pareil avec seulement les champs demandés : une requête $in projetée (le cache ne garde que des
+     * produits complets, on n'y passe donc pas), remise dans l'ordre demandé. null = produits complets
+     */
+    private List<Product> getProductsByIds(List<String> ids, Set<String> fields) {
+        if (fields == null) {
+            return getProductsByIds(ids);
+        }
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<String, Product> found = productRepository.findMatching(Criteria.where("_id").in(ids), fields).stream()
+                .collect(Collectors.toMap(Product::getId, product -> product));
+        List<Product> products = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Product product = found.get(id);
+            if (product != null) {
+                products.add(product);
+            }
+        }
+        return products;
+    }
+    
+    /**
+     * Pagination keyset sur _id : on demande une ligne de plus que la taille de page
+     * pour savoir s'il reste des résultats, sans jamais faire de count ni de skip
+     */
+    private CursorPageDto<Product> fetchPage(Criteria filter, String cursor, Integer size, Set<String> fields) {
+        int pageSize = resolvePageSize(size);
+        String afterId = PageCursor.decode(cursor);
+        
+        List<Product> products = productRepository.findPageAfter(filter, afterId, pageSize + 1, fields);
+        if (products.size() <= pageSize) {
+            return new CursorPageDto<>(products, null);
+        }
+        
+        List<Product> page = new ArrayList<>(products.subList(0, pageSize));
+        String nextCursor = PageCursor.encode(page.get(page.size() - 1).getId());
+        return new CursorPageDto<>(page, nextCursor);
+    }
+    
+    /**
+     * Taille de page demandée, plafonnée par la config
+     */
+    private int resolvePageSize(Integer size) {
+        if (size == null) {
+            return Math.min(defaultPageSize, maxPageSize);
+        }
+        if (size < 1) {
+            throw new IllegalArgumentException("La taille de page doit être positive");
+        }
+        return Math.min(size, maxPageSize);
+    }
+    
+    /**
+     * Charge un produit depuis MongoDB quand il n'est pas dans le cache (null si absent)
+     */
+    private Product loadProduct(String id) {
+        logger.debug("Cache miss, chargement du produit {} depuis MongoDB", id);
+        // Pas de single flight ici : Caffeine ne lance déjà qu'un seul loader par clé
+        return productRepository.findById(id).orElse(null);
+    }
+    
+    /**
+     * Charge plusieurs produits depuis MongoDB en une seule requête ($in sur _id)
+     */
+    private Map<String, Product> loadProducts(Set<? extends String> ids) {
+        logger.debug("Cache miss sur {} produits, chargement groupé depuis MongoDB", ids.size());
+        // Le getAll de Caffeine charge hors verrou : deux lots qui se recouvrent liraient deux fois les mêmes IDs
+        return singleFlight.executeAll(ids, missing -> productRepository.findAllById(new ArrayList<String>(missing)).stream()
+                .collect(Collectors.toMap(Product::getId, product -> product)));
     }
     
     /**
      * Convertit une entité Product en ProductInfoDto (pour les appels inter-services)
      */
     private ProductInfoDto convertToProductInfoDto(Product product) {
-        return new ProductInfoDto(
+        ProductInfoDto dto = new ProductInfoDto(
             product.getId(),
             product.getName(),
             product.getPrice(),
             product.getCategory(),
             product.getStock()
         );
+        dto.setVersion(product.getVersion());
+        return dto;
     }
 }
\ No newline at end of file
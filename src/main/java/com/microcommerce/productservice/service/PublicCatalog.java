@@ -0,0 +1,321 @@
+package com.microcommerce.productservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microcommerce.productservice.dto.PublicProductDto;
+import com.microcommerce.productservice.entity.Product;
+import com.microcommerce.productservice.repository.ProductRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Catalogue public (lecture seule, sans authentification) servi depuis un snapshot immuable
+ * 
+ * Chaque produit est sérialisé en JSON une seule fois, au moment où il change. Après une
+ * écriture, le snapshot est reconstruit en tâche de fond (regroupé sur rebuild-delay-ms) :
+ * les réponses (liste complète, par catégorie, par produit) sont assemblées à partir de ces
+ * morceaux déjà sérialisés, compressées en gzip, avec leur ETag, puis le nouveau snapshot
+ * remplace l'ancien d'un coup. Une lecture publique ne fait qu'un accès à une map.
+ * Une écriture qui ne change pas le JSON public d'un produit (le cas de la plupart des mouvements
+ * de stock : on n'expose que la disponibilité) ne déclenche pas de reconstruction.
+ * Un corps que gzip ne rend pas plus petit (un produit seul, quelques centaines d'octets) n'a pas
+ * de version compressée : il est servi tel quel.
+ * Si le chargement initial depuis MongoDB échoue, le catalogue reste non prêt (503) et le
+ * rebuild en tâche de fond retente le chargement toutes les retry-delay-ms.
+ */
+@Component
+public class PublicCatalog implements ProductChangeListener {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PublicCatalog.class);
+    
+    private static final int BUILD_BATCH_SIZE = 1000;
+    
+    @Autowired
+    private ProductRepository productRepository;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${product.public-catalog.rebuild-delay-ms:500}")
+    private long rebuildDelayMs;
+    
+    @Value("${product.public-catalog.retry-delay-ms:5000}")
+    private long retryDelayMs;
+    
+    // JSON de chaque produit, triés par ID (ordre des listes publiques)
+    private final TreeMap<String, Entry> entries = new TreeMap<>();
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService rebuildThread = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "public-catalog-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private final Object rebuildLock = new Object();
+    // false tant que le chargement complet depuis MongoDB n'a pas réussi : entries ne contient alors
+    // que les produits écrits depuis, on ne doit pas en faire un snapshot
+    private volatile boolean loaded;
+    private volatile Snapshot snapshot;
+    private Timer rebuildTimer;
+    
+    @PostConstruct
+    public void initMetrics() {
+        rebuildTimer = meterRegistry.timer("product.public-catalog.rebuild");
+        meterRegistry.gauge("product.public-catalog.products", this, catalog -> {
+            Snapshot current = catalog.snapshot;
+            return current != null ? current.byId().size() : 0;
+        });
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        rebuildThread.shutdownNow();
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        long start = System.currentTimeMillis();
+        if (!load()) {
+            scheduleRebuild(retryDelayMs);
+            return;
+        }
+        rebuild();
+        logger.info("Catalogue public construit: {} produits en {} ms", entries.size(), System.currentTimeMillis() - start);
+    }
+    
+    /**
+     * Charge tous les produits depuis MongoDB, false (et on reste non prêt) si ça échoue
+     */
+    private boolean load() {
+        synchronized (this) {
+            try (Stream<Product> products = productRepository.streamAll(BUILD_BATCH_SIZE)) {
+                entries.clear();
+                products.forEach(product -> entries.put(product.getId(), toEntry(product)));
+                loaded = true;
+                return true;
+            } catch (RuntimeException e) {
+                logger.error("Échec du chargement du catalogue public, nouvel essai dans {} ms", retryDelayMs, e);
+                return false;
+            }
+        }
+    }
+    
+    public boolean isReady() {
+        return snapshot != null;
+    }
+    
+    /**
+     * Tout le catalogue public (null tant que le premier snapshot n'est pas prêt)
+     */
+    public Body all() {
+        Snapshot current = snapshot;
+        return current != null ? current.all() : null;
+    }
+    
+    /**
+     * Un produit, null s'il n'existe pas (ou si le snapshot n'est pas prêt)
+     */
+    public Body product(String id) {
+        Snapshot current = snapshot;
+        return current != null ? current.byId().get(id) : null;
+    }
+    
+    /**
+     * Les produits d'une catégorie (liste vide si la catégorie n'existe pas)
+     */
+    public Body category(String category) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return null;
+        }
+        return current.byCategory().getOrDefault(category, current.emptyList());
+    }
+    
+    @Override
+    public void onProductSaved(Product current) {
+        Entry entry = toEntry(current);
+        synchronized (this) {
+            Entry previous = entries.get(current.getId());
+            if (previous != null && previous.sameAs(entry)) {
+                return; // même JSON public (ex: stock qui bouge sans changer la dispo), rien à reconstruire
+            }
+            entries.put(current.getId(), entry);
+        }
+        scheduleRebuild(rebuildDelayMs);
+    }
+    
+    @Override
+    public void onProductDeleted(String productId) {
+        synchronized (this) {
+            if (entries.remove(productId) == null) {
+                return;
+            }
+        }
+        scheduleRebuild(rebuildDelayMs);
+    }
+    
+    private void scheduleRebuild(long delayMs) {
+        // Une seule reconstruction en attente : les écritures d'ici là seront prises avec
+        if (rebuildScheduled.compareAndSet(false, true)) {
+            rebuildThread.schedule(this::rebuild, delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    private void rebuild() {
+        rebuildScheduled.set(false);
+        if (!loaded) {
+            if (!load()) {
+                scheduleRebuild(retryDelayMs);
+                return;
+            }
+            logger.info("Catalogue public chargé après un premier échec: {} produits", entries.size());
+        }
+        long start = System.nanoTime();
+        // Un seul rebuild à la fois, sinon un snapshot plus ancien pourrait écraser un plus récent
+        synchronized (rebuildLock) {
+            try {
+                List<Entry> current;
+                synchronized (this) {
+                    current = new ArrayList<>(entries.values());
+                }
+                snapshot = Snapshot.build(current, snapshot);
+                rebuildTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            } catch (Exception e) {
+                logger.error("Erreur lors de la reconstruction du catalogue public", e);
+            }
+        }
+    }
+    
+    private Entry toEntry(Product product) {
+        PublicProductDto dto = new PublicProductDto(
+                product.getId(),
+                product.getName(),
+                product.getDescription(),
+                product.getPrice(),
+                product.getCategory(),
+                product.getStock() != null && product.getStock() > 0);
+        try {
+            return new Entry(product.getId(), product.getCategory(), objectMapper.writeValueAsBytes(dto));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * Réponse pré-calculée : JSON brut, version gzip (null si elle ne serait pas plus petite) et ETag (basé sur le contenu)
+     */
+    public record Body(byte[] json, byte[] gzip, String etag) {
+        
+        static Body of(byte[] json) {
+            byte[] compressed = gzip(json);
+            return new Body(json, compressed.length < json.length ? compressed : null,
+                    "\"" + DigestUtils.md5DigestAsHex(json) + "\"");
+        }
+        
+        /**
+         * ETag de la version compressée (une représentation différente doit avoir son propre ETag)
+         */
+        public String gzipEtag() {
+            return etag.substring(0, etag.length() - 1) + "-gz\"";
+        }
+        
+        private static byte[] gzip(byte[] json) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, json.length / 4));
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                gzip.write(json);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return out.toByteArray();
+        }
+    }
+    
+    /**
+     * Un produit déjà sérialisé
+     */
+    private record Entry(String id, String category, byte[] json) {
+        
+        boolean sameAs(Entry other) {
+            return Objects.equals(category, other.category) && Arrays.equals(json, other.json);
+        }
+    }
+    
+    private record Snapshot(Body all, Map<String, Body> byId, Map<String, Body> byCategory, Body emptyList,
+                            Map<String, Entry> sources) {
+        
+        static Snapshot build(List<Entry> entries, Snapshot previous) {
+            Map<String, Body> byId = new HashMap<>(entries.size() * 2);
+            Map<String, Entry> sources = new HashMap<>(entries.size() * 2);
+            Map<String, List<Entry>> byCategoryEntries = new TreeMap<>();
+            for (Entry entry : entries) {
+                // Produit inchangé depuis le snapshot précédent : on garde son corps déjà compressé
+                Body body = previous != null && previous.sources().get(entry.id()) == entry
+                        ? previous.byId().get(entry.id())
+                        : Body.of(entry.json());
+                byId.put(entry.id(), body);
+                sources.put(entry.id(), entry);
+                if (entry.category() != null) {
+                    byCategoryEntries.computeIfAbsent(entry.category(), category -> new ArrayList<>()).add(entry);
+                }
+            }
+            
+            Map<String, Body> byCategory = new HashMap<>();
+            byCategoryEntries.forEach((category, categoryEntries) -> byCategory.put(category, Body.of(jsonArray(categoryEntries))));
+            return new Snapshot(Body.of(jsonArray(entries)), Map.copyOf(byId), Map.copyOf(byCategory),
+                    Body.of(jsonArray(List.of())), Map.copyOf(sources));
+        }
+        
+        /**
+         * Assemble "[p1,p2,...]" à partir des JSON déjà sérialisés, sans repasser par Jackson
+         */
+        private static byte[] jsonArray(List<Entry> entries) {
+            int size = 2 + Math.max(0, entries.size() - 1);
+            for (Entry entry : entries) {
+                size += entry.json().length;
+            }
+            byte[] out = new byte[size];
+            int position = 0;
+            out[position++] = '[';
+            for (int i = 0; i < entries.size(); i++) {
+                if (i > 0) {
+                    out[position++] = ',';
+                }
+                byte[] json = entries.get(i).json();
+                System.arraycopy(json, 0, out, position, json.length);
+                position += json.length;
+            }
+            out[position] = ']';
+            return out;
+        }
+    }
+}
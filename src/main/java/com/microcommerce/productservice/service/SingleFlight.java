@@ -0,0 +1,194 @@
+package com.microcommerce.productservice.service;
+
+import com.microcommerce.productservice.entity.Product;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Regroupement des lectures identiques simultanées ("single flight")
+ * 
+ * Pendant un lancement produit, des centaines de requêtes pour la même recherche ou les mêmes
+ * produits arrivent dans la même milliseconde : la première lance la requête MongoDB,
+ * les autres attendent son résultat au lieu de lancer chacune la leur.
+ * Ne sert que là où le cache ne le fait pas déjà : un get(id) Caffeine ne lance qu'un chargement
+ * par clé, mais ses getAll groupés et le cache des requêtes chargent en dehors de tout verrou.
+ * Rien n'est gardé une fois la requête terminée (ce n'est pas un cache) et le résultat
+ * est partagé entre tous ceux qui attendaient : il ne faut pas le modifier.
+ * L'attente est bornée (product.single-flight.wait-timeout-ms) : passé ce délai on lance
+ * sa propre lecture plutôt que de rester bloqué derrière une requête qui traîne.
+ * 
+ * Pour ne jamais rendre une lecture commencée avant une écriture à quelqu'un qui arrive après :
+ * les clés produit (productKey) sont oubliées à chaque écriture sur le produit, et les autres
+ * clés doivent contenir une version du catalogue (CatalogVersions).
+ */
+@Component
+public class SingleFlight implements ProductChangeListener {
+    
+    private static final Logger logger = LoggerFactory.getLogger(SingleFlight.class);
+    
+    private static final String PRODUCT_PREFIX = "product:";
+    
+    // Marqueur "attente expirée" (un résultat peut être null)
+    private static final Object TIMED_OUT = new Object();
+    
+    @Value("${product.single-flight.wait-timeout-ms:5000}")
+    private long waitTimeoutMs;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    
+    private Counter executed;
+    private Counter coalesced;
+    private Counter timedOut;
+    
+    @PostConstruct
+    public void init() {
+        executed = meterRegistry.counter("product.single-flight", "result", "executed");
+        coalesced = meterRegistry.counter("product.single-flight", "result", "coalesced");
+        timedOut = meterRegistry.counter("product.single-flight", "result", "timeout");
+        meterRegistry.gaugeMapSize("product.single-flight.in-flight", List.of(), inFlight);
+    }
+    
+    public static String productKey(String id) {
+        return PRODUCT_PREFIX + id;
+    }
+    
+    /**
+     * Exécute la lecture, ou attend celle déjà en cours pour la même clé
+     * Les exceptions de la lecture sont renvoyées à tous ceux qui attendaient
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> loader) {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            coalesced.increment();
+            Object result = await(key, running);
+            if (result != TIMED_OUT) {
+                return (T) result;
+            }
+            executed.increment();
+            return loader.get();
+        }
+        
+        executed.increment();
+        try {
+            T result = loader.get();
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+    
+    /**
+     * Chargement groupé de produits : chaque ID déjà en cours de chargement (par un autre appel groupé)
+     * est attendu, seuls les autres sont passés au loader. Les IDs introuvables sont absents de la map
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Map<String, T> executeAll(Set<? extends String> ids, Function<Set<String>, Map<String, T>> loader) {
+        Map<String, CompletableFuture<Object>> mine = new HashMap<>();
+        Map<String, CompletableFuture<Object>> running = new HashMap<>();
+        for (String id : ids) {
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            CompletableFuture<Object> existing = inFlight.putIfAbsent(productKey(id), future);
+            if (existing != null) {
+                running.put(id, existing);
+            } else {
+                mine.put(id, future);
+            }
+        }
+        
+        Map<String, T> result = new HashMap<>();
+        if (!mine.isEmpty()) {
+            executed.increment();
+            try {
+                Map<String, T> loaded = loader.apply(mine.keySet());
+                result.putAll(loaded);
+                // null = introuvable, pour ceux qui attendent
+                mine.forEach((id, future) -> future.complete(loaded.get(id)));
+            } catch (RuntimeException | Error e) {
+                mine.values().forEach(future -> future.completeExceptionally(e));
+                throw e;
+            } finally {
+                mine.forEach((id, future) -> inFlight.remove(productKey(id), future));
+            }
+        }
+        
+        Set<String> retry = new HashSet<>();
+        for (Map.Entry<String, CompletableFuture<Object>> entry : running.entrySet()) {
+            coalesced.increment();
+            Object value = await(productKey(entry.getKey()), entry.getValue());
+            if (value == TIMED_OUT) {
+                retry.add(entry.getKey());
+            } else if (value != null) {
+                result.put(entry.getKey(), (T) value);
+            }
+        }
+        if (!retry.isEmpty()) {
+            executed.increment();
+            result.putAll(loader.apply(retry));
+        }
+        return result;
+    }
+    
+    /**
+     * Résultat d'une lecture lancée par un autre thread, ou TIMED_OUT si elle dépasse le délai
+     * Les exceptions de la lecture sont relancées telles quelles
+     */
+    private Object await(String key, CompletableFuture<Object> running) {
+        try {
+            return running.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timedOut.increment();
+            logger.warn("Lecture {} toujours en cours après {} ms, on la relance de notre côté", key, waitTimeoutMs);
+            return TIMED_OUT;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrompu en attendant la lecture " + key, e);
+        }
+    }
+    
+    @Override
+    public void onProductSaved(Product current) {
+        // Ceux qui attendent déjà gardent leur résultat, les suivants relancent une lecture
+        inFlight.remove(productKey(current.getId()));
+    }
+    
+    @Override
+    public void onProductDeleted(String productId) {
+        inFlight.remove(productKey(productId));
+    }
+}
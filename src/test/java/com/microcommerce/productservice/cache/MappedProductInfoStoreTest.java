@@ -0,0 +1,123 @@
+package com.microcommerce.productservice.cache;
+
+import com.microcommerce.productservice.dto.ProductInfoDto;
+import com.microcommerce.productservice.entity.Product;
+import com.microcommerce.productservice.repository.ProductRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Réouverture du fichier après un crash au milieu d'une écriture (slot "déchiré", séquence impaire)
+ */
+class MappedProductInfoStoreTest {
+    
+    private static final int CAPACITY = 4;
+    
+    @TempDir
+    Path dir;
+    
+    @Test
+    void reopenDropsTornSlotWithoutBreakingProbeChains() throws IOException {
+        Path file = dir.resolve("product-info.store");
+        ProductRepository repository = mock(ProductRepository.class);
+        
+        // Deux IDs qui visent le même slot : le second est rangé derrière le premier
+        MappedProductInfoStore first = open(file, repository);
+        int slotCount = (int) ReflectionTestUtils.getField(first, "slotCount");
+        String torn = "p0";
+        String behind = collidingId(torn, slotCount);
+        when(repository.streamAll(anyInt())).thenAnswer(invocation -> Stream.of(
+                product(torn, "Déchiré"), product(behind, "Derrière")));
+        first.reconcile();
+        assertTrue(first.isReady());
+        int tornBase = first.find(torn);
+        assertNotEquals(first.find(behind), tornBase);
+        first.close();
+        
+        // Crash simulé pendant la réécriture du premier : séquence laissée impaire
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            buffer.order(ByteOrder.nativeOrder());
+            int seq = tornBase + MappedProductInfoStore.SEQ;
+            buffer.putLong(seq, buffer.getLong(seq) + 1);
+            buffer.force();
+        }
+        
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        MappedProductInfoStore reopened = open(file, repository, meterRegistry);
+        // Rien n'est servi avant la première resynchro
+        assertFalse(reopened.isReady());
+        assertNull(reopened.get(behind));
+        assertEquals(1.0, records(meterRegistry));
+        
+        // Le produit déchiré a été supprimé côté MongoDB entre-temps
+        when(repository.streamAll(anyInt())).thenAnswer(invocation -> Stream.of(product(behind, "Derrière v2")));
+        reopened.reconcile();
+        
+        assertTrue(reopened.isReady());
+        assertNull(reopened.get(torn));
+        ProductInfoDto info = reopened.get(behind);
+        assertEquals("Derrière v2", info.getName());
+        // Retrouvé à sa place en passant par le slot supprimé, pas réinséré en double
+        assertEquals(1.0, records(meterRegistry));
+        reopened.close();
+    }
+    
+    private MappedProductInfoStore open(Path file, ProductRepository repository) throws IOException {
+        return open(file, repository, new SimpleMeterRegistry());
+    }
+    
+    private MappedProductInfoStore open(Path file, ProductRepository repository, SimpleMeterRegistry meterRegistry)
+            throws IOException {
+        MappedProductInfoStore store = new MappedProductInfoStore();
+        ReflectionTestUtils.setField(store, "productRepository", repository);
+        ReflectionTestUtils.setField(store, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(store, "enabled", true);
+        ReflectionTestUtils.setField(store, "path", file.toString());
+        ReflectionTestUtils.setField(store, "capacity", CAPACITY);
+        ReflectionTestUtils.setField(store, "maxStalenessMs", 300_000L);
+        store.open();
+        return store;
+    }
+    
+    private static String collidingId(String id, int slotCount) {
+        int home = Math.floorMod(MappedProductInfoStore.hash(id), slotCount);
+        for (int i = 1; ; i++) {
+            String candidate = "p" + i;
+            if (Math.floorMod(MappedProductInfoStore.hash(candidate), slotCount) == home) {
+                return candidate;
+            }
+        }
+    }
+    
+    private static double records(SimpleMeterRegistry meterRegistry) {
+        return meterRegistry.get("product.internal-store.records").gauge().value();
+    }
+    
+    private static Product product(String id, String name) {
+        Product product = new Product(name, null, new BigDecimal("9.99"), 3, "cat");
+        product.setId(id);
+        product.setVersion(1L);
+        return product;
+    }
+}
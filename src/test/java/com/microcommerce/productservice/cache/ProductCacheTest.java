@@ -0,0 +1,80 @@
+package com.microcommerce.productservice.cache;
+
+import com.microcommerce.productservice.entity.Product;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * getAll charge hors verrou : un evict arrivé pendant le chargement ne doit pas laisser l'ancienne version en cache
+ */
+class ProductCacheTest {
+    
+    private ProductCache cache;
+    
+    @BeforeEach
+    void setUp() {
+        cache = new ProductCache();
+        ReflectionTestUtils.setField(cache, "maximumSize", 100L);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 300L);
+        ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+        cache.init();
+    }
+    
+    @Test
+    void bulkLoadIsCached() {
+        Product loaded = product("p1", "v1");
+        cache.getAll(List.of("p1"), missing -> Map.of("p1", loaded));
+        
+        AtomicInteger reloads = new AtomicInteger();
+        Product cached = cache.get("p1", id -> {
+            reloads.incrementAndGet();
+            return product(id, "rechargé");
+        });
+        
+        assertSame(loaded, cached);
+        assertEquals(0, reloads.get());
+    }
+    
+    @Test
+    void bulkLoadOverlappingAWriteIsNotCached() {
+        Product stale = product("p1", "avant écriture");
+        Product untouched = product("p2", "v1");
+        
+        // L'écriture (et son evict) tombe pendant le chargement groupé, qui a déjà lu l'ancienne version
+        Map<String, Product> result = cache.getAll(List.of("p1", "p2"), missing -> {
+            cache.evict("p1");
+            return Map.of("p1", stale, "p2", untouched);
+        });
+        
+        // L'appelant reçoit quand même ce qui a été lu (avant l'écriture)...
+        assertSame(stale, result.get("p1"));
+        // ...mais la lecture suivante recharge au lieu de servir la version périmée
+        Product fresh = product("p1", "après écriture");
+        assertSame(fresh, cache.get("p1", id -> fresh));
+        assertSame(untouched, cache.get("p2", id -> product(id, "rechargé")));
+    }
+    
+    @Test
+    void evictAfterBulkLoadRemovesEntry() {
+        cache.getAll(List.of("p1"), missing -> Map.of("p1", product("p1", "v1")));
+        cache.onProductSaved(product("p1", "v2"));
+        
+        Product fresh = product("p1", "v2");
+        assertSame(fresh, cache.get("p1", id -> fresh));
+    }
+    
+    private static Product product(String id, String name) {
+        Product product = new Product(name, null, null, 1, "cat");
+        product.setId(id);
+        return product;
+    }
+}
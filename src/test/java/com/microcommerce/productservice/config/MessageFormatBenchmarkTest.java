@@ -0,0 +1,100 @@
+package com.microcommerce.productservice.config;
+
+import com.microcommerce.productservice.event.ProductEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Benchmark JSON vs Smile sur les events produit, avec les convertisseurs configurés par RabbitMQConfig
+ * 
+ * Mesure la taille des messages et le temps moyen d'encodage / décodage (après un warmup).
+ * Désactivé par défaut pour ne pas ralentir les tests, à lancer avec :
+ *   mvn test -Dtest=MessageFormatBenchmarkTest -Dbenchmark=true
+ * Nombre d'itérations réglable avec -Dbenchmark.iterations (200000 par défaut)
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class MessageFormatBenchmarkTest {
+    
+    private static final int WARMUP_ITERATIONS = 50_000;
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 200_000);
+    
+    // Évite que le JIT supprime le travail mesuré
+    private long blackhole;
+    
+    @Test
+    void compareJsonAndSmile() {
+        Map<String, ProductEvent> events = new LinkedHashMap<>();
+        events.put("snapshot", snapshotEvent());
+        events.put("delta-stock", stockDeltaEvent());
+        
+        System.out.printf("%-12s %-6s %8s %12s %12s%n", "event", "format", "bytes", "encode ns", "decode ns");
+        for (Map.Entry<String, ProductEvent> entry : events.entrySet()) {
+            for (String format : List.of("json", "smile")) {
+                MessageConverter converter = new RabbitMQConfig().messageConverter(format);
+                ProductEvent event = entry.getValue();
+                
+                Message message = converter.toMessage(event, new MessageProperties());
+                ProductEvent decoded = (ProductEvent) converter.fromMessage(message);
+                assertEquals(event.getProductId(), decoded.getProductId());
+                assertEquals(event.getVersion(), decoded.getVersion());
+                
+                measure(converter, event, message, WARMUP_ITERATIONS);
+                long[] nanos = measure(converter, event, message, ITERATIONS);
+                System.out.printf("%-12s %-6s %8d %12d %12d%n", entry.getKey(), format, message.getBody().length,
+                        nanos[0] / ITERATIONS, nanos[1] / ITERATIONS);
+            }
+        }
+    }
+    
+    /**
+     * {temps total d'encodage, temps total de décodage} en nanosecondes
+     */
+    private long[] measure(MessageConverter converter, ProductEvent event, Message message, int iterations) {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            blackhole += converter.toMessage(event, new MessageProperties()).getBody().length;
+        }
+        long encode = System.nanoTime() - start;
+        
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            blackhole += ((ProductEvent) converter.fromMessage(message)).getStock();
+        }
+        long decode = System.nanoTime() - start;
+        return new long[] {encode, decode};
+    }
+    
+    /**
+     * UPDATED complet, comme en format snapshot
+     */
+    private static ProductEvent snapshotEvent() {
+        ProductEvent event = new ProductEvent("6571f0c2a9d3e41b2c8f7a15", "Casque audio sans fil",
+                "Casque Bluetooth à réduction de bruit active, 30h d'autonomie",
+                new BigDecimal("149.99"), 42, "Électronique", ProductEvent.EventType.UPDATED);
+        event.setVersion(17L);
+        return event;
+    }
+    
+    /**
+     * UPDATED en format delta qui ne porte que le stock (le cas des commandes)
+     */
+    private static ProductEvent stockDeltaEvent() {
+        ProductEvent event = new ProductEvent();
+        event.setProductId("6571f0c2a9d3e41b2c8f7a15");
+        event.setStock(41);
+        event.setEventType(ProductEvent.EventType.UPDATED);
+        event.setVersion(18L);
+        event.setChangedFields(List.of("stock"));
+        return event;
+    }
+}
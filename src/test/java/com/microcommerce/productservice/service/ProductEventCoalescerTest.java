@@ -0,0 +1,97 @@
+package com.microcommerce.productservice.service;
+
+import com.microcommerce.productservice.event.ProductEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.microcommerce.productservice.service.ProductEventDeltasTest.delta;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Regroupement des UPDATED : c'est toujours la plus grande version qui part, les snapshots ne comptent pas
+ */
+class ProductEventCoalescerTest {
+    
+    @Test
+    void newerMeansHigherOrEqualVersion() {
+        assertTrue(ProductEventCoalescer.isNewer(delta(3L, null), delta(2L, null)));
+        assertTrue(ProductEventCoalescer.isNewer(delta(2L, null), delta(2L, null)));
+        assertFalse(ProductEventCoalescer.isNewer(delta(1L, null), delta(2L, null)));
+        // Version inconnue : rien pour les départager, le dernier arrivé gagne
+        assertTrue(ProductEventCoalescer.isNewer(delta(null, null), delta(2L, null)));
+        assertTrue(ProductEventCoalescer.isNewer(delta(1L, null), delta(null, null)));
+    }
+    
+    @Test
+    void batchKeepsHighestVersionWhateverTheOrder() {
+        ProductEvent v3 = delta(3L, List.of("stock"));
+        v3.setStock(3);
+        ProductEvent v5 = delta(5L, List.of("stock"));
+        v5.setStock(5);
+        ProductEvent v4 = delta(4L, List.of("price"));
+        
+        List<ProductEvent> result = ProductEventCoalescer.coalesce(List.of(v3, v5, v4), event -> event, event -> false);
+        
+        assertEquals(1, result.size());
+        ProductEvent kept = result.get(0);
+        assertEquals(5L, kept.getVersion());
+        assertEquals(5, kept.getStock());
+        assertEquals(List.of("price", "stock"), kept.getChangedFields());
+        assertEquals(3, kept.getMergedCount());
+    }
+    
+    @Test
+    void batchDoesNotMergeAcrossOtherEventTypes() {
+        ProductEvent before = delta(1L, List.of("stock"));
+        ProductEvent deleted = new ProductEvent("p1", null, null, null, null, null, ProductEvent.EventType.DELETED);
+        ProductEvent after = delta(2L, List.of("stock"));
+        
+        List<ProductEvent> result = ProductEventCoalescer.coalesce(List.of(before, deleted, after), event -> event, event -> false);
+        
+        assertEquals(List.of(before, deleted, after), result);
+    }
+    
+    @Test
+    void snapshotsDoNotCountAsUpdates() {
+        ProductEvent update = delta(2L, List.of("stock"));
+        ProductEvent snapshot = delta(2L, null);
+        
+        List<ProductEvent> result = ProductEventCoalescer.coalesce(List.of(update, snapshot), event -> event,
+                event -> event == snapshot);
+        
+        assertEquals(1, result.size());
+        assertNull(result.get(0).getMergedCount());
+    }
+    
+    @Test
+    void windowSendsHighestVersionAndFlushesBeforeDelete() {
+        List<ProductEvent> sent = Collections.synchronizedList(new ArrayList<>());
+        ProductEventCoalescer coalescer = new ProductEventCoalescer(60_000, (event, routingKey) -> sent.add(event));
+        
+        // Deux écritures concurrentes soumises dans le désordre
+        ProductEvent v2 = delta(2L, List.of("stock"));
+        v2.setStock(2);
+        ProductEvent v1 = delta(1L, List.of("name"));
+        v1.setName("Nom v1");
+        coalescer.submit(v2, "product.updated");
+        coalescer.submit(v1, "product.updated");
+        coalescer.submit(delta(2L, null), "product.updated", true);
+        assertEquals(1, coalescer.pendingCount());
+        
+        ProductEvent deleted = new ProductEvent("p1", null, null, null, null, null, ProductEvent.EventType.DELETED);
+        coalescer.submit(deleted, "product.deleted");
+        coalescer.shutdown();
+        
+        assertEquals(2, sent.size());
+        ProductEvent update = sent.get(0);
+        assertEquals(2L, update.getVersion());
+        assertEquals(2, update.getMergedCount());
+        assertEquals(deleted, sent.get(1));
+    }
+}
@@ -0,0 +1,81 @@
+package com.microcommerce.productservice.service;
+
+import com.microcommerce.productservice.entity.Product;
+import com.microcommerce.productservice.event.ProductEvent;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Fusion de deux deltas successifs et détection des champs modifiés
+ */
+class ProductEventDeltasTest {
+    
+    @Test
+    void mergeKeepsFieldsOnlyTheOlderDeltaChanged() {
+        ProductEvent older = delta(1L, List.of("price", "stock"));
+        older.setPrice(new BigDecimal("19.99"));
+        older.setStock(5);
+        ProductEvent newer = delta(2L, List.of("stock"));
+        newer.setStock(3);
+        
+        ProductEvent merged = ProductEventDeltas.merge(older, newer);
+        
+        assertSame(newer, merged);
+        assertEquals(List.of("price", "stock"), merged.getChangedFields());
+        assertEquals(new BigDecimal("19.99"), merged.getPrice());
+        // Champ modifié par les deux : c'est la valeur la plus récente qui reste
+        assertEquals(3, merged.getStock());
+        assertEquals(2L, merged.getVersion());
+    }
+    
+    @Test
+    void mergeIntoSnapshotKeepsSnapshot() {
+        ProductEvent older = delta(1L, List.of("price"));
+        older.setPrice(new BigDecimal("1.00"));
+        ProductEvent snapshot = delta(2L, null);
+        snapshot.setPrice(new BigDecimal("2.00"));
+        
+        ProductEvent merged = ProductEventDeltas.merge(older, snapshot);
+        
+        assertNull(merged.getChangedFields());
+        assertEquals(new BigDecimal("2.00"), merged.getPrice());
+    }
+    
+    @Test
+    void mergeAfterSnapshotBecomesSnapshot() {
+        ProductEvent snapshot = delta(1L, null);
+        snapshot.setName("Nom");
+        snapshot.setCategory("cat");
+        ProductEvent newer = delta(2L, List.of("stock"));
+        newer.setStock(7);
+        
+        ProductEvent merged = ProductEventDeltas.merge(snapshot, newer);
+        
+        assertNull(merged.getChangedFields());
+        assertEquals("Nom", merged.getName());
+        assertEquals("cat", merged.getCategory());
+        assertEquals(7, merged.getStock());
+    }
+    
+    @Test
+    void changedFieldsComparesPricesByValue() {
+        Product before = new Product("Nom", "desc", new BigDecimal("10.0"), 4, "cat");
+        Product after = new Product("Nom", "desc", new BigDecimal("10.00"), 2, "cat");
+        
+        assertEquals(Set.of("stock"), ProductEventDeltas.changedFields(before, after));
+    }
+    
+    static ProductEvent delta(Long version, List<String> changedFields) {
+        ProductEvent event = new ProductEvent("p1", null, null, null, null, null, ProductEvent.EventType.UPDATED);
+        event.setVersion(version);
+        event.setChangedFields(changedFields);
+        return event;
+    }
+}
@@ -0,0 +1,160 @@
+package com.microcommerce.productservice.service;
+
+import com.microcommerce.productservice.entity.Product;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Invariants de SingleFlight : une seule lecture par clé, attente bornée, et jamais de
+ * lecture commencée avant une écriture rendue à quelqu'un qui arrive après
+ */
+class SingleFlightTest {
+    
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private SingleFlight singleFlight;
+    
+    @BeforeEach
+    void setUp() {
+        singleFlight = new SingleFlight();
+        ReflectionTestUtils.setField(singleFlight, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(singleFlight, "waitTimeoutMs", 5000L);
+        singleFlight.init();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        threads.shutdownNow();
+    }
+    
+    @Test
+    void concurrentCallersShareOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> singleFlight.execute("search:a", () -> {
+            loads.incrementAndGet();
+            started.countDown();
+            await(release);
+            return "résultat";
+        }), threads);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> singleFlight.execute("search:a", () -> {
+            loads.incrementAndGet();
+            return "doublon";
+        }), threads);
+        waitForCount("coalesced", 1);
+        release.countDown();
+        
+        assertEquals("résultat", first.get(5, TimeUnit.SECONDS));
+        assertEquals("résultat", second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, loads.get());
+    }
+    
+    @Test
+    void waiterFallsBackToItsOwnLoadAfterTimeout() throws Exception {
+        ReflectionTestUtils.setField(singleFlight, "waitTimeoutMs", 100L);
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<String> stuck = CompletableFuture.supplyAsync(() -> singleFlight.execute("search:a", () -> {
+            started.countDown();
+            await(release);
+            return "lent";
+        }), threads);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        
+        long start = System.nanoTime();
+        String result = singleFlight.execute("search:a", () -> "relancé");
+        
+        assertEquals("relancé", result);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 100);
+        assertEquals(1.0, counter("timeout"));
+        release.countDown();
+        assertEquals("lent", stuck.get(5, TimeUnit.SECONDS));
+    }
+    
+    @Test
+    void writeDetachesReadStartedBefore() throws Exception {
+        String key = SingleFlight.productKey("p1");
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<String> before = CompletableFuture.supplyAsync(() -> singleFlight.execute(key, () -> {
+            started.countDown();
+            await(release);
+            return "avant écriture";
+        }), threads);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        
+        singleFlight.onProductSaved(product("p1"));
+        
+        // Arrivé après l'écriture : ne doit pas attendre (ni recevoir) la lecture d'avant
+        assertEquals("après écriture", singleFlight.execute(key, () -> "après écriture"));
+        assertEquals(0.0, counter("coalesced"));
+        release.countDown();
+        assertEquals("avant écriture", before.get(5, TimeUnit.SECONDS));
+    }
+    
+    @Test
+    void bulkLoadOnlyFetchesIdsNotAlreadyInFlight() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<String> single = CompletableFuture.supplyAsync(
+                () -> singleFlight.execute(SingleFlight.productKey("p1"), () -> {
+                    started.countDown();
+                    await(release);
+                    return "p1 déjà en cours";
+                }), threads);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        
+        CompletableFuture<Map<String, String>> bulk = CompletableFuture.supplyAsync(
+                () -> singleFlight.executeAll(Set.of("p1", "p2"), missing -> {
+                    assertEquals(Set.of("p2"), missing);
+                    return Map.of("p2", "p2 chargé");
+                }), threads);
+        waitForCount("coalesced", 1);
+        release.countDown();
+        
+        assertEquals(Map.of("p1", "p1 déjà en cours", "p2", "p2 chargé"), bulk.get(5, TimeUnit.SECONDS));
+        assertEquals("p1 déjà en cours", single.get(5, TimeUnit.SECONDS));
+    }
+    
+    private void waitForCount(String result, double expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (counter(result) < expected) {
+            assertTrue(System.nanoTime() < deadline, "Compteur " + result + " jamais atteint");
+            Thread.sleep(5);
+        }
+    }
+    
+    private double counter(String result) {
+        return meterRegistry.get("product.single-flight").tag("result", result).counter().count();
+    }
+    
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private static Product product(String id) {
+        Product product = new Product("Produit", null, null, 1, "cat");
+        product.setId(id);
+        return product;
+    }
+}